@@ -0,0 +1,200 @@
+package com.fwumdesoft.shoot.loadtest;
+
+import static com.fwumdesoft.shoot.net.NetConstants.*;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Random;
+import com.badlogic.gdx.math.MathUtils;
+import com.fwumdesoft.shoot.net.SnapshotDecoder;
+
+/**
+ * One simulated client. Speaks the same protocol as {@code ServerInterface} over its own non-blocking
+ * DatagramChannel so the server sees every bot as a separate client.
+ * <p>Once connected a bot flies in a circle, sending its state at the client send rate and firing a bolt
+ * on a fixed interval. It acknowledges every snapshot it completes and measures how long it takes for a
+ * state it sent to come back in a snapshot, which is the server's tick latency plus the round trip.
+ * Only use a Bot from the {@link BotWorker} that owns it.
+ */
+class Bot implements SnapshotDecoder.Listener {
+	/** Time in milliseconds to wait for a handshake before sending another MSG_CONNECT. */
+	private static final long CONNECT_RETRY_INTERVAL = 1000L;
+	/** Time in milliseconds after which a sent state that never came back is given up on. */
+	private static final long PROBE_TIMEOUT = 1000L;
+	private static final float CIRCLE_RADIUS = 200f;
+	/** Degrees per second a bot goes around its circle. */
+	private static final float CIRCLE_SPEED = 90f;
+	private static final float BOLT_SPEED = 600f;
+	
+	final DatagramChannel channel;
+	private final SocketAddress serverAddress;
+	private final BotWorker.Stats stats;
+	private final long uuidMostBits, uuidLeastBits;
+	private final SnapshotDecoder snapshotDecoder = new SnapshotDecoder();
+	
+	private final long sendInterval, fireInterval;
+	private final float centerX, centerY;
+	private float angle;
+	
+	private int clientId = NULL_ID;
+	private int boltCounter;
+	private long lastConnectTime = Long.MIN_VALUE / 2, lastSendTime, lastFireTime;
+	
+	/** Quantized state that was sent and is waiting to come back in a snapshot. */
+	private int probeX = -1, probeY = -1;
+	private long probeTime;
+	/** Time the snapshot being decoded was received. */
+	private long probeReceiveTime;
+	
+	/**
+	 * @param sendRate Number of state updates sent per second.
+	 * @param fireInterval Time in milliseconds between bolts. 0 doesn't fire at all.
+	 * @param random Used to pick where the bot flies so runs with the same seed are repeatable.
+	 */
+	Bot(DatagramChannel channel, SocketAddress serverAddress, BotWorker.Stats stats, int sendRate, long fireInterval, Random random) {
+		this.channel = channel;
+		this.serverAddress = serverAddress;
+		this.stats = stats;
+		this.sendInterval = 1000L / sendRate;
+		this.fireInterval = fireInterval;
+		uuidMostBits = random.nextLong();
+		uuidLeastBits = random.nextLong();
+		centerX = CIRCLE_RADIUS + random.nextFloat() * (WORLD_WIDTH - 2 * CIRCLE_RADIUS);
+		centerY = CIRCLE_RADIUS + random.nextFloat() * (WORLD_HEIGHT - 2 * CIRCLE_RADIUS);
+		angle = random.nextFloat() * 360f;
+	}
+	
+	/**
+	 * Connects, moves and fires if it's time to.
+	 * @param time Current time in milliseconds.
+	 * @param out Buffer to write outgoing messages into.
+	 */
+	void update(long time, ByteBuffer out) {
+		if(clientId == NULL_ID) {
+			if(time - lastConnectTime >= CONNECT_RETRY_INTERVAL) {
+				putHeader(out, 16, MSG_CONNECT); //2 longs
+				out.putLong(uuidMostBits);
+				out.putLong(uuidLeastBits);
+				send(out);
+				lastConnectTime = time;
+			}
+			return;
+		}
+		
+		if(time - lastSendTime >= sendInterval) {
+			float delta = (time - lastSendTime) / 1000f;
+			lastSendTime = time;
+			angle = (angle + CIRCLE_SPEED * Math.min(delta, 1f)) % 360f;
+			float x = centerX + CIRCLE_RADIUS * MathUtils.cosDeg(angle);
+			float y = centerY + CIRCLE_RADIUS * MathUtils.sinDeg(angle);
+			int qx = X_QUANTIZER.quantize(x), qy = Y_QUANTIZER.quantize(y);
+			
+			putHeader(out, 6, MSG_UPDATE_PLAYER); //3 shorts
+			out.putShort((short)qx);
+			out.putShort((short)qy);
+			out.putShort((short)ANGLE_QUANTIZER.quantize(angle + 90f)); //face along the circle
+			send(out);
+			
+			if(probeX < 0 || time - probeTime > PROBE_TIMEOUT) {
+				probeX = qx;
+				probeY = qy;
+				probeTime = time;
+			}
+		}
+		
+		if(fireInterval > 0 && time - lastFireTime >= fireInterval) {
+			lastFireTime = time;
+			putHeader(out, 14, MSG_SPAWN_BOLT); //1 int 3 shorts 1 float
+			out.putInt(clientId << 16 | (++boltCounter & 0xFFFF));
+			out.putShort((short)X_QUANTIZER.quantize(centerX + CIRCLE_RADIUS * MathUtils.cosDeg(angle)));
+			out.putShort((short)Y_QUANTIZER.quantize(centerY + CIRCLE_RADIUS * MathUtils.sinDeg(angle)));
+			out.putShort((short)ANGLE_QUANTIZER.quantize(angle + 90f));
+			out.putFloat(BOLT_SPEED);
+			send(out);
+		}
+	}
+	
+	/**
+	 * Handles every message in a datagram from the server.
+	 * @param datagram Buffer holding the datagram from its position to its limit.
+	 * @param time Current time in milliseconds.
+	 * @param out Buffer to write replies into.
+	 */
+	void receive(ByteBuffer datagram, long time, ByteBuffer out) {
+		stats.bytesReceived += datagram.remaining();
+		while(datagram.remaining() >= HEADER_LENGTH) {
+			final int start = datagram.position();
+			final int dataLength = datagram.getInt();
+			final int end = start + HEADER_LENGTH + dataLength;
+			if(dataLength < 0 || end > datagram.limit())
+				break;
+			final byte msgId = datagram.get();
+			final int senderId = datagram.getShort() & 0xFFFF;
+			stats.messagesReceived++;
+			
+			if(msgId == MSG_CONNECT_HANDSHAKE && clientId == NULL_ID) {
+				clientId = senderId;
+				lastSendTime = time;
+				lastFireTime = time;
+				stats.connected++;
+			} else if(msgId == MSG_SNAPSHOT && clientId != NULL_ID) {
+				probeReceiveTime = time;
+				if(snapshotDecoder.decode(datagram, this)) {
+					stats.snapshotsReceived++;
+					putHeader(out, 4, MSG_SNAPSHOT_ACK); //1 int
+					out.putInt(snapshotDecoder.getLastCompletedSequence());
+					send(out);
+				}
+			}
+			datagram.position(end);
+		}
+	}
+	
+	@Override
+	public void updated(int netId, float x, float y, float rotation) {
+		if(netId != clientId || probeX < 0)
+			return;
+		if(X_QUANTIZER.quantize(x) == probeX && Y_QUANTIZER.quantize(y) == probeY) {
+			stats.recordLatency(probeReceiveTime - probeTime);
+			probeX = probeY = -1;
+		}
+	}
+	
+	@Override
+	public void removed(int netId) {}
+	
+	/**
+	 * Tells the server this bot is leaving.
+	 */
+	void disconnect(ByteBuffer out) {
+		if(clientId == NULL_ID)
+			return;
+		putHeader(out, 0, MSG_DISCONNECT);
+		send(out);
+		clientId = NULL_ID;
+	}
+	
+	boolean isConnected() {
+		return clientId != NULL_ID;
+	}
+	
+	private void putHeader(ByteBuffer out, int dataLength, byte msgId) {
+		out.clear();
+		out.putInt(dataLength);
+		out.put(msgId);
+		out.putShort((short)clientId);
+	}
+	
+	private void send(ByteBuffer out) {
+		out.flip();
+		try {
+			if(channel.send(out, serverAddress) == 0)
+				stats.sendFailures++;
+			else
+				stats.messagesSent++;
+		} catch(IOException e) {
+			stats.sendFailures++;
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package com.fwumdesoft.shoot.loadtest;
+
+import static com.fwumdesoft.shoot.net.NetConstants.PACKET_LENGTH;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Random;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.LongArray;
+
+/**
+ * A thread that runs a share of the {@link Bot}s. Every bot's channel is registered with one Selector so
+ * a single thread can run thousands of bots.
+ */
+class BotWorker extends Thread {
+	/** Longest time in milliseconds the worker waits for packets before updating its bots. */
+	private static final long SELECT_TIMEOUT = 5L;
+	
+	private final Selector selector;
+	private final Array<Bot> bots = new Array<>();
+	private final ByteBuffer in = ByteBuffer.allocateDirect(PACKET_LENGTH);
+	private final ByteBuffer out = ByteBuffer.allocateDirect(PACKET_LENGTH);
+	/** Only referenced while holding its lock. */
+	private final Stats stats = new Stats();
+	
+	/**
+	 * Opens a channel for each bot and registers it with this worker's Selector.
+	 * @param index Index of this worker. Used to name the thread.
+	 * @param firstBot Index of this worker's first bot. Used to seed each bot so runs are repeatable.
+	 * @throws IOException If a Selector or channel couldn't be opened.
+	 */
+	BotWorker(int index, int firstBot, int botCount, SocketAddress serverAddress, int sendRate, long fireInterval, long seed)
+			throws IOException {
+		super("bot_worker_" + index);
+		selector = Selector.open();
+		for(int i = 0; i < botCount; i++) {
+			DatagramChannel channel = DatagramChannel.open();
+			channel.bind(new InetSocketAddress(0));
+			channel.configureBlocking(false);
+			Bot bot = new Bot(channel, serverAddress, stats, sendRate, fireInterval, new Random(seed + firstBot + i));
+			channel.register(selector, SelectionKey.OP_READ, bot);
+			bots.add(bot);
+		}
+	}
+	
+	@Override
+	public void run() {
+		while(!Thread.interrupted()) {
+			try {
+				selector.select(SELECT_TIMEOUT);
+			} catch(IOException e) {
+				System.err.println("Failed to wait for packets on " + getName());
+				break;
+			}
+			
+			synchronized(stats) {
+				long time = System.currentTimeMillis();
+				for(Iterator<SelectionKey> keys = selector.selectedKeys().iterator(); keys.hasNext();) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					receiveAll((Bot)key.attachment(), time);
+				}
+				for(int i = 0; i < bots.size; i++) {
+					bots.get(i).update(time, out);
+				}
+			}
+		}
+		
+		synchronized(stats) {
+			for(int i = 0; i < bots.size; i++) {
+				bots.get(i).disconnect(out);
+				try {
+					bots.get(i).channel.close();
+				} catch(IOException e) {}
+			}
+		}
+		try {
+			selector.close();
+		} catch(IOException e) {}
+	}
+	
+	/**
+	 * Hands every datagram waiting on a bot's channel to the bot.
+	 */
+	private void receiveAll(Bot bot, long time) {
+		while(true) {
+			in.clear();
+			try {
+				if(bot.channel.receive(in) == null)
+					return;
+			} catch(IOException e) {
+				return;
+			}
+			in.flip();
+			bot.receive(in, time, out);
+		}
+	}
+	
+	/**
+	 * Adds the stats gathered since the last call to a total and resets them. Safe to call from any thread.
+	 */
+	void drainStats(Stats total) {
+		synchronized(stats) {
+			total.add(stats);
+			stats.clear();
+		}
+	}
+	
+	/**
+	 * Stops this worker, disconnects its bots and waits for it to finish.
+	 */
+	void close() {
+		interrupt(); //also wakes it up if it's waiting on the selector
+		try {
+			join();
+		} catch(InterruptedException e) {}
+	}
+	
+	/**
+	 * Counters gathered by bots.
+	 */
+	static class Stats {
+		/** Number of bots that finished connecting. */
+		long connected;
+		long messagesSent, sendFailures;
+		long messagesReceived, bytesReceived;
+		long snapshotsReceived;
+		/** Time in milliseconds for a sent state to come back in a snapshot. */
+		final LongArray latencies = new LongArray();
+		
+		void recordLatency(long millis) {
+			latencies.add(millis);
+		}
+		
+		void add(Stats other) {
+			connected += other.connected;
+			messagesSent += other.messagesSent;
+			sendFailures += other.sendFailures;
+			messagesReceived += other.messagesReceived;
+			bytesReceived += other.bytesReceived;
+			snapshotsReceived += other.snapshotsReceived;
+			latencies.addAll(other.latencies);
+		}
+		
+		void clear() {
+			connected = messagesSent = sendFailures = messagesReceived = bytesReceived = snapshotsReceived = 0;
+			latencies.clear();
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package com.fwumdesoft.shoot.loadtest;
+
+import static com.fwumdesoft.shoot.net.NetConstants.*;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+
+/**
+ * Runs thousands of headless {@link Bot}s against a server from one JVM and reports what they see once a
+ * second: how many are connected, how many snapshots they complete, how long it takes for a state a bot
+ * sent to come back in a snapshot and how much data the server sends them. The same arguments always
+ * create the same bots, so runs against the same server can be compared.
+ * <p>Arguments are {@code name=value} pairs, and every one is optional:
+ * <li>bots: Number of bots. Default 100.
+ * <li>server: Address of the server. Default 127.0.0.1 on the server's port.
+ * <li>threads: Number of threads running bots. Default the number of cores.
+ * <li>duration: Seconds to run before disconnecting. Default 60.
+ * <li>rate: State updates each bot sends per second. Default {@code NetConstants.DEFAULT_CLIENT_SEND_RATE}.
+ * <li>fire: Milliseconds between each bot's bolts. 0 doesn't fire. Default 500.
+ * <li>seed: Seed used to place the bots. Default 1.
+ */
+public class LoadGenerator {
+	/** Time in milliseconds between each report. */
+	private static final long REPORT_INTERVAL = 1000L;
+	
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int botCount = 100;
+		InetSocketAddress serverAddress = new InetSocketAddress("127.0.0.1", DEFAULT_PORT);
+		int threads = Runtime.getRuntime().availableProcessors();
+		long duration = 60;
+		int sendRate = DEFAULT_CLIENT_SEND_RATE;
+		long fireInterval = 500;
+		long seed = 1;
+		for(String arg : args) {
+			int split = arg.indexOf('=');
+			if(split < 0)
+				throw new IllegalArgumentException("Arguments must look like name=value: " + arg);
+			String name = arg.substring(0, split), value = arg.substring(split + 1);
+			switch(name)
+			{
+			case "bots":
+				botCount = Integer.parseInt(value);
+				break;
+			case "server":
+				int portSplit = value.lastIndexOf(':');
+				serverAddress = portSplit < 0 ? new InetSocketAddress(value, DEFAULT_PORT)
+						: new InetSocketAddress(value.substring(0, portSplit), Integer.parseInt(value.substring(portSplit + 1)));
+				break;
+			case "threads":
+				threads = Integer.parseInt(value);
+				break;
+			case "duration":
+				duration = Long.parseLong(value);
+				break;
+			case "rate":
+				sendRate = Integer.parseInt(value);
+				break;
+			case "fire":
+				fireInterval = Long.parseLong(value);
+				break;
+			case "seed":
+				seed = Long.parseLong(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown argument: " + name);
+			}
+		}
+		threads = Math.max(1, Math.min(threads, botCount));
+		
+		System.out.println("Running " + botCount + " bots on " + threads + " threads against " + serverAddress + " for "
+				+ duration + "s");
+		BotWorker[] workers = new BotWorker[threads];
+		int firstBot = 0;
+		for(int i = 0; i < threads; i++) {
+			int count = botCount / threads + (i < botCount % threads ? 1 : 0);
+			workers[i] = new BotWorker(i, firstBot, count, serverAddress, sendRate, fireInterval, seed);
+			firstBot += count;
+		}
+		for(BotWorker worker : workers)
+			worker.start();
+		
+		BotWorker.Stats interval = new BotWorker.Stats();
+		BotWorker.Stats total = new BotWorker.Stats();
+		long start = System.currentTimeMillis();
+		long connected = 0;
+		for(long second = 1; second <= duration; second++) {
+			Thread.sleep(Math.max(0, start + second * REPORT_INTERVAL - System.currentTimeMillis()));
+			interval.clear();
+			for(BotWorker worker : workers)
+				worker.drainStats(interval);
+			connected += interval.connected;
+			System.out.println(second + "s connected: " + connected + "/" + botCount + " " + format(interval, 1));
+			total.add(interval);
+		}
+		
+		for(BotWorker worker : workers)
+			worker.close();
+		System.out.println("Total over " + duration + "s: " + format(total, duration));
+	}
+	
+	/**
+	 * @param seconds Number of seconds the stats were gathered over.
+	 */
+	private static String format(BotWorker.Stats stats, long seconds) {
+		long[] latencies = Arrays.copyOf(stats.latencies.items, stats.latencies.size);
+		Arrays.sort(latencies);
+		return String.format("snapshots/s: %d update latency p50: %dms p99: %dms max: %dms received: %.1f KB/s "
+				+ "sent/s: %d send failures: %d", stats.snapshotsReceived / seconds, percentile(latencies, 50),
+				percentile(latencies, 99), latencies.length == 0 ? 0 : latencies[latencies.length - 1],
+				stats.bytesReceived / 1024.0 / seconds, stats.messagesSent / seconds, stats.sendFailures);
+	}
+	
+	private static long percentile(long[] sorted, double percentile) {
+		if(sorted.length == 0)
+			return 0;
+		int index = (int)Math.ceil(percentile / 100.0 * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+	}
+}
@@ -0,0 +1,74 @@
+package com.fwumdesoft.shoot.model;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntMap;
+
+/**
+ * Measures finding a {@link NetActor} by netId through an index like the one {@link NetStage} keeps,
+ * against scanning every actor like the client used to. A Stage needs a graphics context, so the
+ * index is built directly.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NetIdLookupBenchmark {
+	@Param({"1000", "10000", "100000"})
+	public int actorCount;
+	
+	private final IntMap<NetActor> index = new IntMap<>();
+	private final Array<NetActor> actors = new Array<>();
+	/** netIds to look up in order. */
+	private int[] lookups;
+	private int next;
+	
+	@Setup
+	public void setup() {
+		for(int i = 0; i < actorCount; i++) {
+			//netIds are made like bolt netIds, with the owner's session id in the upper 16 bits
+			NetActor actor = new NetActor((i / 1000 + 1) << 16 | i % 1000);
+			index.put(actor.getNetId(), actor);
+			actors.add(actor);
+		}
+		Random random = new Random(1);
+		lookups = new int[1024];
+		for(int i = 0; i < lookups.length; i++)
+			lookups[i] = actors.get(random.nextInt(actorCount)).getNetId();
+	}
+	
+	@Benchmark
+	public NetActor indexed() {
+		return index.get(nextLookup());
+	}
+	
+	@Benchmark
+	public NetActor linearScan() {
+		int netId = nextLookup();
+		for(int i = 0; i < actors.size; i++) {
+			if(actors.get(i).getNetId() == netId)
+				return actors.get(i);
+		}
+		return null;
+	}
+	
+	private int nextLookup() {
+		int netId = lookups[next];
+		next = next + 1 & lookups.length - 1;
+		return netId;
+	}
+}
@@ -0,0 +1,48 @@
+package com.fwumdesoft.shoot.net.server;
+
+import static com.fwumdesoft.shoot.net.NetConstants.*;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures moving every bolt by one tick in a {@link BoltStore}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoltIntegrationBenchmark {
+	@Param({"1000", "10000", "100000"})
+	public int boltCount;
+	
+	private BoltStore bolts;
+	
+	@Setup
+	public void setup() {
+		Random random = new Random(1);
+		bolts = new BoltStore(boltCount);
+		for(int i = 0; i < boltCount; i++) {
+			bolts.add(i, NULL_ID, random.nextFloat() * WORLD_WIDTH, random.nextFloat() * WORLD_HEIGHT,
+					random.nextFloat() * 360f, 600f);
+		}
+	}
+	
+	@Benchmark
+	public BoltStore integrate() {
+		bolts.integrate(1f / DEFAULT_TICK_RATE);
+		return bolts;
+	}
+}
@@ -0,0 +1,85 @@
+package com.fwumdesoft.shoot.net.server;
+
+import static com.fwumdesoft.shoot.net.NetConstants.*;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.badlogic.gdx.math.Intersector;
+import com.badlogic.gdx.math.Polygon;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Measures a tick's worth of bolt and player collision checks like {@code Server.tick} does: rebuilding the
+ * {@link SpatialGrid} out of every player, then checking each bolt's hitbox against the players in its cells.
+ * Also measures a single Polygon overlap check on its own.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionBenchmark {
+	@Param({"1000", "10000", "100000"})
+	public int boltCount;
+	@Param({"100"})
+	public int playerCount;
+	
+	private BoltStore bolts;
+	private PlayerState[] players;
+	private final SpatialGrid playerGrid = new SpatialGrid(-WORLD_MARGIN, -WORLD_MARGIN, WORLD_WIDTH + 2 * WORLD_MARGIN,
+			WORLD_HEIGHT + 2 * WORLD_MARGIN, 64f);
+	private final IntArray hitCandidates = new IntArray();
+	
+	@Setup
+	public void setup() {
+		Random random = new Random(1);
+		bolts = new BoltStore(boltCount);
+		for(int i = 0; i < boltCount; i++) {
+			bolts.add(i, NULL_ID, random.nextFloat() * WORLD_WIDTH, random.nextFloat() * WORLD_HEIGHT,
+					random.nextFloat() * 360f, 600f);
+		}
+		players = new PlayerState[playerCount];
+		for(int i = 0; i < playerCount; i++) {
+			players[i] = new PlayerState(i + 1);
+			players[i].update(X_QUANTIZER.quantize(random.nextFloat() * WORLD_WIDTH),
+					Y_QUANTIZER.quantize(random.nextFloat() * WORLD_HEIGHT), random.nextInt(1 << ANGLE_BITS));
+		}
+	}
+	
+	@Benchmark
+	public int gridBroadPhase() {
+		playerGrid.clear();
+		for(int i = 0; i < players.length; i++)
+			playerGrid.insert(i, players[i].getHitbox().getBoundingRectangle());
+		
+		int hits = 0;
+		for(int i = 0; i < bolts.size(); i++) {
+			Polygon hitbox = bolts.getHitbox(i);
+			hitCandidates.clear();
+			playerGrid.query(hitbox.getBoundingRectangle(), hitCandidates);
+			for(int j = 0; j < hitCandidates.size; j++) {
+				if(Intersector.overlapConvexPolygons(hitbox, players[hitCandidates.get(j)].getHitbox())) {
+					hits++;
+					break;
+				}
+			}
+		}
+		return hits;
+	}
+	
+	@Benchmark
+	public boolean overlapConvexPolygons() {
+		return Intersector.overlapConvexPolygons(bolts.getHitbox(0), players[0].getHitbox());
+	}
+}
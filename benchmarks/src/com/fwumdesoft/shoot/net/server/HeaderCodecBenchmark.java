@@ -0,0 +1,77 @@
+package com.fwumdesoft.shoot.net.server;
+
+import static com.fwumdesoft.shoot.net.NetConstants.*;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures writing a message header like {@code ServerInterface.createHeader} and the server's putHeader do,
+ * and decoding a whole message into a {@link Command} like the ingress workers do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeaderCodecBenchmark {
+	private final ByteBuffer out = ByteBuffer.allocateDirect(PACKET_LENGTH);
+	/** One message of every type clients send. */
+	private final ByteBuffer[] messages = new ByteBuffer[5];
+	private final SocketAddress address = new InetSocketAddress("127.0.0.1", 5555);
+	private final Command command = new Command();
+	private int next;
+	
+	@Setup
+	public void setup() {
+		messages[0] = message(0, MSG_HEARTBEAT);
+		messages[1] = message(6, MSG_UPDATE_PLAYER).putShort((short)1).putShort((short)2).putShort((short)3);
+		messages[2] = message(14, MSG_SPAWN_BOLT).putInt(1 << 16 | 1).putShort((short)1).putShort((short)2)
+				.putShort((short)3).putFloat(600f);
+		messages[3] = message(4, MSG_SNAPSHOT_ACK).putInt(42);
+		messages[4] = message(16, MSG_CONNECT).putLong(1L).putLong(2L);
+		for(ByteBuffer message : messages)
+			message.flip();
+	}
+	
+	private static ByteBuffer message(int dataLength, byte msgId) {
+		ByteBuffer message = ByteBuffer.allocateDirect(PACKET_LENGTH);
+		message.putInt(dataLength);
+		message.put(msgId);
+		message.putShort((short)1);
+		return message;
+	}
+	
+	@Benchmark
+	public ByteBuffer encodeUpdatePlayer() {
+		out.clear();
+		out.putInt(6);
+		out.put(MSG_UPDATE_PLAYER);
+		out.putShort((short)1);
+		out.putShort((short)X_QUANTIZER.quantize(100f));
+		out.putShort((short)Y_QUANTIZER.quantize(200f));
+		out.putShort((short)ANGLE_QUANTIZER.quantize(45f));
+		out.flip();
+		return out;
+	}
+	
+	@Benchmark
+	public boolean decodeCommand() {
+		ByteBuffer message = messages[next];
+		next = (next + 1) % messages.length;
+		message.position(0);
+		return command.decode(message, address);
+	}
+}
@@ -0,0 +1,79 @@
+package com.fwumdesoft.shoot.net.server;
+
+import static com.fwumdesoft.shoot.net.NetConstants.*;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.fwumdesoft.shoot.net.SnapshotState;
+
+/**
+ * Measures recording and encoding a tick's snapshot like {@code Server.tick} does, both delta encoded against
+ * the last snapshot and in full for a client that hasn't acknowledged one. A tenth of the entities move each tick.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+	@Param({"1000", "10000", "100000"})
+	public int entityCount;
+	
+	private final SnapshotHistory history = new SnapshotHistory();
+	private int[] x, y, rotation;
+	private int sequence;
+	private int moveOffset;
+	
+	@Setup
+	public void setup() {
+		Random random = new Random(1);
+		x = new int[entityCount];
+		y = new int[entityCount];
+		rotation = new int[entityCount];
+		for(int i = 0; i < entityCount; i++) {
+			x[i] = X_QUANTIZER.quantize(random.nextFloat() * WORLD_WIDTH);
+			y[i] = Y_QUANTIZER.quantize(random.nextFloat() * WORLD_HEIGHT);
+			rotation[i] = random.nextInt(1 << ANGLE_BITS);
+		}
+		record();
+	}
+	
+	/**
+	 * Moves a tenth of the entities and records them as the next snapshot.
+	 */
+	private void record() {
+		for(int i = moveOffset; i < entityCount; i += 10) {
+			x[i] = x[i] + 3 & (1 << POSITION_BITS) - 1;
+			rotation[i] = rotation[i] + 1 & (1 << ANGLE_BITS) - 1;
+		}
+		moveOffset = (moveOffset + 1) % 10;
+		
+		SnapshotState snapshot = history.begin(sequence++);
+		for(int i = 0; i < entityCount; i++) {
+			snapshot.put(i, x[i], y[i], rotation[i]);
+		}
+	}
+	
+	@Benchmark
+	public int deltaSnapshot() {
+		record();
+		return history.getSnapshot(sequence - 2).getPacketCount();
+	}
+	
+	@Benchmark
+	public int fullSnapshot() {
+		record();
+		return history.getSnapshot(NO_SNAPSHOT).getPacketCount();
+	}
+}
@@ -2,36 +2,72 @@ package com.fwumdesoft.shoot;
 
 import static com.fwumdesoft.shoot.net.NetConstants.*;
 import java.nio.ByteBuffer;
-import java.util.UUID;
+import java.util.concurrent.locks.LockSupport;
+import com.badlogic.gdx.Application;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.ScreenAdapter;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.Texture;
-import com.badlogic.gdx.scenes.scene2d.Actor;
-import com.badlogic.gdx.scenes.scene2d.Stage;
 import com.badlogic.gdx.utils.Align;
 import com.badlogic.gdx.utils.viewport.FillViewport;
 import com.fwumdesoft.shoot.model.NetActor;
+import com.fwumdesoft.shoot.model.NetStage;
 import com.fwumdesoft.shoot.model.Player;
 import com.fwumdesoft.shoot.net.ServerInterface;
+import com.fwumdesoft.shoot.net.SnapshotDecoder;
+import com.fwumdesoft.shoot.net.SpscRingBuffer;
 
 public class GameScreen extends ScreenAdapter {
-	private Stage stage;
+	/** Max number of changes from the server waiting to be applied. Must be a power of two. */
+	private static final int NET_UPDATE_QUEUE_CAPACITY = 16384;
+	/** Max number of changes from the server applied in one frame. */
+	private static final int MAX_NET_UPDATES_PER_FRAME = 4096;
+	/** Time the net receive thread waits for the render thread when the queue is full. */
+	private static final long QUEUE_FULL_PARK_NANOS = 100000L;
+	
+	/** Connection to the server. Closed when this screen is disposed. */
+	private final ServerInterface server;
+	private NetStage stage;
 	/** The player controlled by the computer running the application. */
 	private Player localPlayer;
 	
 	private Thread netReceiveThread;
+	/** Only reference this from within the net receive thread! */
+	private final SnapshotDecoder snapshotDecoder = new SnapshotDecoder();
+	/** Created once so decoding a snapshot doesn't allocate. */
+	private final SnapshotDecoder.Listener snapshotListener = new SnapshotDecoder.Listener() {
+		@Override
+		public void updated(int netId, float x, float y, float rotation) {
+			queueUpdate(NetUpdate.ACTOR_MOVED, netId, x, y, rotation);
+		}
+		
+		@Override
+		public void removed(int netId) {
+			queueUpdate(NetUpdate.ACTOR_REMOVED, netId, 0, 0, 0);
+		}
+	};
+	/** Changes decoded by the net receive thread, applied by the render thread at the start of each frame. */
+	private final SpscRingBuffer<NetUpdate> netUpdates = new SpscRingBuffer<>(NET_UPDATE_QUEUE_CAPACITY, NetUpdate::new);
+	/** Time in seconds since the last client network tick. */
+	private float netTickTime;
+	
+	/**
+	 * @param server A connection that completed its handshake. This screen takes ownership of it.
+	 */
+	public GameScreen(final ServerInterface server) {
+		this.server = server;
+	}
 	
 	@Override
 	public void show() {
 		FillViewport viewport = new FillViewport(500, 500f * ((float)Gdx.graphics.getHeight() / Gdx.graphics.getWidth()));
-		stage = new Stage(viewport);
+		stage = new NetStage(viewport);
 		Gdx.input.setInputProcessor(stage);
 		
 		startNetReceiveThread();
 		
-		localPlayer = new Player(ServerInterface.getClientId(), true);
-		localPlayer.addListener(new InputManager(localPlayer));
+		localPlayer = new Player(server.getClientId(), true);
+		localPlayer.addListener(new InputManager(localPlayer, server));
 		stage.setKeyboardFocus(localPlayer);
 		stage.addActor(localPlayer);
 		localPlayer.setPosition(viewport.getWorldWidth()/2, viewport.getWorldHeight()/2, Align.center);
@@ -43,110 +79,123 @@ public class GameScreen extends ScreenAdapter {
 	private void startNetReceiveThread() {
 		netReceiveThread = new Thread(() -> {
 			while(!Thread.interrupted()) {
-				if(!ServerInterface.isConnected())
+				if(!server.isConnected())
 					continue;
-				ByteBuffer buffer = ServerInterface.receiveData();
+				ByteBuffer buffer = server.receiveData();
 				if(buffer == null) {
 					Gdx.app.debug("GameScreen", "Skipped a message from the server");
 					continue;
 				}
 				
-				@SuppressWarnings("unused")
-				final int dataLength = buffer.getInt();
-				final byte msgId = buffer.get();
-				final UUID senderId = new UUID(buffer.getLong(), buffer.getLong());
-				final ByteBuffer data = buffer;
-				
-				Gdx.app.log("GameScreen", msgId + "");
-				
-				switch(msgId)
-				{
-				case MSG_CONNECT:
-					Player newPlayer = new Player(senderId);
-					stage.addActor(newPlayer);
-					Gdx.app.log("GameScreen", "Added a new player to the stage ID: " + senderId);
-					break;
-				case MSG_DISCONNECT:
-					Actor removedActor = null;
-					for(Actor a : stage.getActors()) {
-						if(a instanceof NetActor) {
-							NetActor netActor = (NetActor)a;
-							if(senderId.equals(netActor.getNetId())) {
-								removedActor = netActor;
-								break;
-							}
-						}
-					}
-					if(removedActor != null) {
-						removedActor.remove();
-					}
-					Gdx.app.log("GameScreen", "Removed a player with ID: " + senderId + " from the stage");
-					break;
-				case MSG_UPDATE_PLAYER:
-					for(Actor a : stage.getActors()) {
-						if(a instanceof Player) {
-							Player player = (Player)a;
-							if(senderId.equals(player.getNetId())) {
-								player.setX(data.getFloat());
-								player.setY(data.getFloat());
-								player.setRotation(data.getFloat());
-								Gdx.app.debug("GameScreen", "player ID: " + player.getNetId() + " " + player.getX() + " " + player.getY() + " rot: "
-										+ player.getRotation());
-							}
-						}
+				//the server packs several messages into each datagram
+				while(buffer.remaining() >= HEADER_LENGTH) {
+					final int start = buffer.position();
+					final int dataLength = buffer.getInt();
+					final int end = start + HEADER_LENGTH + dataLength;
+					if(dataLength < 0 || end > buffer.limit()) {
+						Gdx.app.error("GameScreen", "Received a truncated message from the server");
+						break;
 					}
-					Gdx.app.debug("GameScreen", "Updated Player ID: " + senderId);
-					break;
-				case MSG_UPDATE:
-					UUID netId = new UUID(data.getLong(), data.getLong());
-					float x = data.getFloat();
-					float y = data.getFloat();
-					float rot = data.getFloat();
-					for(Actor a : stage.getActors()) {
-						if(a instanceof NetActor) {
-							NetActor n = (NetActor)a;
-							if(n.getNetId().equals(netId)) {
-								n.setPosition(x, y);
-								n.setRotation(rot);
-								break;
-							}
-						}
-					}
-					
-					Gdx.app.debug("GameScreen", "Updated NetActor ID: " + netId);
-					break;
-				case MSG_REMOVE_BOLT:
-					UUID boltNetId = new UUID(data.getLong(), data.getLong());
-					UUID targetId = new UUID(data.getLong(), data.getLong());
-					
-					//remove bolt from stage
-					Actor removed = null;
-					synchronized(stage) {
-						for(Actor a : stage.getActors()) {
-							if(a instanceof NetActor) {
-								NetActor n = (NetActor)a;
-								if(n.getNetId().equals(boltNetId)) {
-									removed = n;
-									break;
-								}
-							}
-						}
-					}
-					if(removed != null)
-						removed.remove();
-					
-					if(!targetId.equals(NULL_ID)) {
-						//TODO do something if the bolt hit a player
-					}
-					
-					Gdx.app.log("GameScreen", "Received MSG_REMOVE_BOLT");
-					break;
+					handleMessage(buffer);
+					buffer.position(end);
 				}
 			}
 		}, "net_receive_thread");
 		netReceiveThread.start();
 	}
 	
+	/**
+	 * Handles one message from the server.
+	 * <p>Only call this from within the net receive thread! The stage is never touched here. Changes are
+	 * queued for the render thread instead. Runs for every message so it must not allocate, and debug messages
+	 * are only built if they will be logged.
+	 * @param buffer Buffer positioned right after the message's data length.
+	 */
+	private void handleMessage(ByteBuffer buffer) {
+		final byte msgId = buffer.get();
+		final int senderId = buffer.getShort() & 0xFFFF;
+		
+		switch(msgId)
+		{
+		case MSG_CONNECT:
+			queueUpdate(NetUpdate.PLAYER_JOINED, senderId, 0, 0, 0);
+			break;
+		case MSG_DISCONNECT:
+			queueUpdate(NetUpdate.ACTOR_REMOVED, senderId, 0, 0, 0);
+			break;
+		case MSG_SNAPSHOT:
+			if(snapshotDecoder.decode(buffer, snapshotListener)) {
+				server.acknowledgeSnapshot(snapshotDecoder.getLastCompletedSequence());
+				if(isDebugEnabled())
+					Gdx.app.debug("GameScreen", "Received snapshot " + snapshotDecoder.getLastCompletedSequence());
+			}
+			break;
+		case MSG_REMOVE_BOLT:
+			int boltNetId = buffer.getInt();
+			int targetId = buffer.getShort() & 0xFFFF;
+			queueUpdate(NetUpdate.ACTOR_REMOVED, boltNetId, 0, 0, 0);
+			
+			if(targetId != NULL_ID) {
+				//TODO do something if the bolt hit a player
+			}
+			break;
+		}
+	}
+	
+	/**
+	 * Queues a change for the render thread to apply. Waits for the render thread if the queue is full
+	 * because dropping an added or removed actor would leave the stage out of sync with the server.
+	 * <p>Only call this from within the net receive thread!
+	 * @param type One of the {@link NetUpdate} types.
+	 */
+	private void queueUpdate(int type, int netId, float x, float y, float rotation) {
+		NetUpdate update;
+		while((update = netUpdates.claim()) == null) {
+			if(Thread.currentThread().isInterrupted())
+				return; //the screen is being disposed
+			LockSupport.parkNanos(QUEUE_FULL_PARK_NANOS);
+		}
+		update.set(type, netId, x, y, rotation);
+		netUpdates.publish();
+	}
+	
+	/**
+	 * Applies the changes queued by the net receive thread, at most {@link #MAX_NET_UPDATES_PER_FRAME}
+	 * of them so a burst can't stall a frame. The rest are applied next frame.
+	 * <p>Only call this from within the render thread!
+	 */
+	private void applyNetUpdates() {
+		NetUpdate update;
+		for(int i = 0; i < MAX_NET_UPDATES_PER_FRAME && (update = netUpdates.peek()) != null; i++) {
+			switch(update.type)
+			{
+			case NetUpdate.PLAYER_JOINED:
+				if(stage.findNetActor(update.netId) == null) {
+					stage.addActor(new Player(update.netId));
+					Gdx.app.log("GameScreen", "Added a new player to the stage ID: " + update.netId);
+				}
+				break;
+			case NetUpdate.ACTOR_REMOVED:
+				NetActor removed = stage.findNetActor(update.netId);
+				if(removed != null && removed != localPlayer)
+					removed.remove();
+				break;
+			case NetUpdate.ACTOR_MOVED:
+				NetActor n = stage.findNetActor(update.netId);
+				if(n != null && n != localPlayer) { //the client has authority over its own player
+					n.setPosition(update.x, update.y);
+					n.setRotation(update.rotation);
+				}
+				break;
+			}
+			netUpdates.release();
+		}
+	}
+	
+	private static boolean isDebugEnabled() {
+		return Gdx.app.getLogLevel() >= Application.LOG_DEBUG;
+	}
+	
 	@Override
 	public void resize(int width, int height) {
 		stage.getViewport().update(width, height);
@@ -157,6 +206,8 @@ public class GameScreen extends ScreenAdapter {
 		Gdx.gl.glClearColor(0, 0, 0, 1);
 		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
 		
+		applyNetUpdates();
+		
 		stage.getBatch().begin();
 		stage.getBatch().draw(Main.assets.get("textures/background.png", Texture.class), 0, 0);
 		stage.getBatch().end();
@@ -164,8 +215,23 @@ public class GameScreen extends ScreenAdapter {
 		stage.act(delta);
 		stage.draw();
 		
-		if(ServerInterface.isConnected())
-			ServerInterface.heartbeat();
+		if(server.isConnected())
+			netTick(delta);
+	}
+	
+	/**
+	 * Sends the local player's state to the server at most {@link ServerInterface#getSendRate()} times per second
+	 * no matter how many times it moved, and sends a heartbeat if the client has been quiet.
+	 */
+	private void netTick(float delta) {
+		final float interval = 1f / server.getSendRate();
+		netTickTime += delta;
+		if(netTickTime >= interval) {
+			//don't try to catch up on ticks missed during a long frame
+			netTickTime = Math.min(netTickTime - interval, interval);
+			server.updateLocalPlayer(localPlayer);
+		}
+		server.heartbeat();
 	}
 	
 	@Override
@@ -176,6 +242,9 @@ public class GameScreen extends ScreenAdapter {
 	@Override
 	public void dispose() {
 		stage.dispose();
+		//close before interrupting since interrupting a thread that is using the channel closes it
+		//before the MSG_DISCONNECT can be sent. Closing also wakes up the net receive thread
+		server.close();
 		netReceiveThread.interrupt();
 		Gdx.app.log("GameScreen", "Disposed");
 	}
@@ -7,13 +7,23 @@ import com.badlogic.gdx.assets.AssetManager;
 import com.badlogic.gdx.audio.Sound;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.scenes.scene2d.ui.Skin;
-import com.fwumdesoft.shoot.net.ServerInterface;
+import com.fwumdesoft.shoot.net.ClientConfig;
 
 public class Main extends Game {
 	
 	public static Game game;
 	public static Skin uiskin;
 	public static AssetManager assets;
+	/** Settings for every connection to the server. */
+	public static ClientConfig netConfig;
+	
+	public Main() {
+		this(new ClientConfig());
+	}
+	
+	public Main(ClientConfig netConfig) {
+		Main.netConfig = netConfig;
+	}
 	
 	@Override
 	public void create() {
@@ -33,8 +43,6 @@ public class Main extends Game {
 	public void dispose() {
 		super.dispose();
 		uiskin.dispose();
-		assets.dispose();
-		if(ServerInterface.isConnected())
-			ServerInterface.disconnect();
+		assets.dispose(); //the GameScreen closes its connection when it's hidden
 	}
 }
@@ -1,6 +1,5 @@
 package com.fwumdesoft.shoot;
 
-import static com.fwumdesoft.shoot.net.NetConstants.*;
 import java.nio.ByteBuffer;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input.Keys;
@@ -31,28 +30,27 @@ public class MainScreen extends ScreenAdapter {
 		btnJoin.addListener(new ClickListener() {
 			@Override
 			public void clicked(InputEvent event, float x, float y) {
-				//Connect client to the server
-				if(!ServerInterface.isConnected()) { //ensure preconditions are followed
-					ServerInterface.connect();
-					if(ServerInterface.isConnected()) { //ensure preconditions are followed
-						ByteBuffer buffer = ServerInterface.receiveData();
-						if(buffer == null) {
-							displayNetError("Failed to connect to game server");
-							ServerInterface.disconnect();
-							return;
-						}
-						
-						if(buffer.get(MSG_ID_OFFSET) == MSG_CONNECT_HANDSHAKE)
-							Main.game.setScreen(new GameScreen());
-						else {
-							displayNetError("No response from server");
-							ServerInterface.disconnect();
-							return;
-						}
-					}
-				} else {
-					displayNetError("Client already connected. Try again");
-					ServerInterface.disconnect();
+				//Connect client to the server with a new connection so leaving a game and joining again works
+				final ServerInterface server;
+				try {
+					server = new ServerInterface(Main.netConfig);
+					server.connect();
+				} catch(IllegalStateException e) {
+					displayNetError("Failed to connect to game server");
+					return;
+				}
+				ByteBuffer buffer = server.receiveData();
+				if(buffer == null) {
+					displayNetError("Failed to connect to game server");
+					server.close();
+					return;
+				}
+				
+				if(server.completeHandshake(buffer))
+					Main.game.setScreen(new GameScreen(server));
+				else {
+					displayNetError("No response from server");
+					server.close();
 				}
 			}
 		});
@@ -0,0 +1,26 @@
+package com.fwumdesoft.shoot;
+
+/**
+ * A change to the stage decoded by the net receive thread that the render thread still has to apply.
+ * NetUpdates live in the slots of a {@link com.fwumdesoft.shoot.net.SpscRingBuffer} and are reused.
+ */
+class NetUpdate {
+	/** A player joined. Uses {@link #netId}. */
+	static final int PLAYER_JOINED = 0;
+	/** A player left or a bolt was removed. Uses {@link #netId}. */
+	static final int ACTOR_REMOVED = 1;
+	/** An actor moved. Uses every field. */
+	static final int ACTOR_MOVED = 2;
+	
+	int type;
+	int netId;
+	float x, y, rotation;
+	
+	void set(int type, int netId, float x, float y, float rotation) {
+		this.type = type;
+		this.netId = netId;
+		this.x = x;
+		this.y = y;
+		this.rotation = rotation;
+	}
+}
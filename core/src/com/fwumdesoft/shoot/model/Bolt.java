@@ -1,6 +1,6 @@
 package com.fwumdesoft.shoot.model;
 
-import java.util.UUID;
+import static com.fwumdesoft.shoot.net.NetConstants.NULL_ID;
 
 import com.badlogic.gdx.Application.ApplicationType;
 import com.badlogic.gdx.Gdx;
@@ -15,14 +15,16 @@ import com.badlogic.gdx.utils.Pool.Poolable;
 import com.fwumdesoft.shoot.Main;
 
 /**
- * Represents a bolt on the client and on the server. Only gets drawn for the client.
+ * Represents a bolt on the client. The server simulates bolts without Actors.
  * This class is designed be be used only in a {@link Pool}.
  */
 public class Bolt extends NetActor implements Poolable {
+	public static final float WIDTH = 12f, HEIGHT = 4f;
+	
 	private static TextureRegion texture;
 	
 	private float speed;
-	private UUID shooterId;
+	private int shooterId;
 	private Polygon hitbox;
 	
 	static {
@@ -36,16 +38,25 @@ public class Bolt extends NetActor implements Poolable {
 	 * <b>Should only be called by a pool when a new instance needs to be created.<b>
 	 */
 	public Bolt() {
-		super(UUID.randomUUID());
-		shooterId = null;
-		setWidth(12);
-		setHeight(4);
+		super(NULL_ID);
+		shooterId = NULL_ID;
+		setWidth(WIDTH);
+		setHeight(HEIGHT);
 		setOrigin(Align.left);
 		hitbox = new Polygon(new float[] {0f, 0f, getWidth(), 0f, getWidth(), getHeight(), 0f, getHeight()});
 		hitbox.setOrigin(getOriginX(), getOriginY());
 		hitbox.setScale(getScaleX(), getScaleY());
 	}
 	
+	/**
+	 * Moves this Bolt along its velocity. Snapshots from the server correct any drift.
+	 */
+	@Override
+	public void act(float delta) {
+		super.act(delta);
+		moveBy(getSpeedCompX() * delta, getSpeedCompY() * delta);
+	}
+	
 	@Override
 	public void draw(Batch batch, float parentAlpha) {
 		batch.draw(texture, getX(), getY(), getOriginX(), getOriginY(), getWidth(), getHeight(), getScaleX(), getScaleY(), getRotation());
@@ -66,17 +77,17 @@ public class Bolt extends NetActor implements Poolable {
 	 * @param id new Id.
 	 * @return This Bolt for method chaining.
 	 */
-	public Bolt setShooterId(UUID id) {
+	public Bolt setShooterId(int id) {
 		shooterId = id;
 		return this;
 	}
 	
-	public UUID getShooterId() {
+	public int getShooterId() {
 		return shooterId;
 	}
 	
 	@Override
-	public Bolt setNetId(UUID newId) {
+	public Bolt setNetId(int newId) {
 		super.setNetId(newId);
 		return this;
 	}
@@ -104,8 +115,8 @@ public class Bolt extends NetActor implements Poolable {
 	
 	@Override
 	public void reset() {
-		setNetId(UUID.randomUUID());
-		setShooterId(null);
+		setNetId(NULL_ID);
+		setShooterId(NULL_ID);
 		setPosition(0, 0);
 		setRotation(0);
 		setSpeed(0);
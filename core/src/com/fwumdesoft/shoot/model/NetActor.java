@@ -1,8 +1,7 @@
 package com.fwumdesoft.shoot.model;
 
-import java.util.UUID;
-
 import com.badlogic.gdx.scenes.scene2d.Actor;
+import com.badlogic.gdx.scenes.scene2d.Stage;
 
 /**
  * An Actor that has a netId so it can be associated with an Object on the server.
@@ -11,24 +10,39 @@ import com.badlogic.gdx.scenes.scene2d.Actor;
 public class NetActor extends Actor {
 	private float lastX, lastY, lastRot;
 	
-	private UUID netId;
+	private int netId;
 	
 	public NetActor() {}
 	
 	/**
 	 * Instantiates a NetActor with a netId. All NetActors should
 	 * have their netId set.
+	 * <p>Players use their owner's session id as their netId. Other actors use the
+	 * session id of the client that created them in the upper 16 bits so that clients
+	 * can create netIds without asking the server.
 	 * @param id netId of this NetActor.
 	 */
-	public NetActor(UUID id) {
+	public NetActor(int id) {
 		netId = id;
 	}
 	
-	public UUID getNetId() {
+	public int getNetId() {
 		return netId;
 	}
 	
 	
+	/**
+	 * Keeps the netId index of a {@link NetStage} in sync as this NetActor is added to or removed from it.
+	 */
+	@Override
+	protected void setStage(Stage stage) {
+		if(getStage() instanceof NetStage)
+			((NetStage)getStage()).unregister(this);
+		super.setStage(stage);
+		if(stage instanceof NetStage)
+			((NetStage)stage).register(this);
+	}
+	
 	@Override
 	protected void positionChanged() {
 		positionChanged(getX() - lastX, getY() - lastY);
@@ -60,8 +74,15 @@ public class NetActor extends Actor {
 	 * @param newId The new netId.
 	 * @return This NetActor for method chaining.
 	 */
-	public NetActor setNetId(UUID newId) {
-		netId = newId;
+	public NetActor setNetId(int newId) {
+		if(getStage() instanceof NetStage) {
+			NetStage stage = (NetStage)getStage();
+			stage.unregister(this);
+			netId = newId;
+			stage.register(this);
+		} else {
+			netId = newId;
+		}
 		return this;
 	}
 	
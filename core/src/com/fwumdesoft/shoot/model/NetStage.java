@@ -0,0 +1,51 @@
+package com.fwumdesoft.shoot.model;
+
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.scenes.scene2d.Stage;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.viewport.Viewport;
+
+/**
+ * A Stage that keeps an index of its {@link NetActor}s by netId so they can be found without
+ * scanning every Actor. The index is kept in sync by NetActors as they are added to and removed
+ * from the stage or change their netId.
+ */
+public class NetStage extends Stage {
+	private final IntMap<NetActor> netActors = new IntMap<>();
+	
+	public NetStage(Viewport viewport) {
+		super(viewport);
+	}
+	
+	public NetStage(Viewport viewport, Batch batch) {
+		super(viewport, batch);
+	}
+	
+	/**
+	 * @param netId netId of the NetActor.
+	 * @return The NetActor on this stage with the netId or null if there isn't one.
+	 */
+	public NetActor findNetActor(int netId) {
+		return netActors.get(netId);
+	}
+	
+	/**
+	 * @param netId netId of the NetActor.
+	 * @param type Class the NetActor must be an instance of.
+	 * @return The NetActor on this stage with the netId or null if there isn't one or it isn't the type.
+	 */
+	public <T extends NetActor> T findNetActor(int netId, Class<T> type) {
+		NetActor actor = netActors.get(netId);
+		return type.isInstance(actor) ? type.cast(actor) : null;
+	}
+	
+	void register(NetActor actor) {
+		netActors.put(actor.getNetId(), actor);
+	}
+	
+	void unregister(NetActor actor) {
+		//another actor may have taken the netId
+		if(netActors.get(actor.getNetId()) == actor)
+			netActors.remove(actor.getNetId());
+	}
+}
@@ -1,6 +1,5 @@
 package com.fwumdesoft.shoot.model;
 
-import java.util.UUID;
 import com.badlogic.gdx.Application.ApplicationType;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Texture;
@@ -10,7 +9,6 @@ import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Polygon;
 import com.badlogic.gdx.utils.Align;
 import com.fwumdesoft.shoot.Main;
-import com.fwumdesoft.shoot.net.ServerInterface;
 
 /**
  * Represents a player in the game that can move around the world.
@@ -18,17 +16,28 @@ import com.fwumdesoft.shoot.net.ServerInterface;
  * authority over the position of the player.
  */
 public class Player extends NetActor {
+	public static final float WIDTH = 40f, HEIGHT = 40f;
+	
 	private float speed = 500;
 	public static final float ROTATE_SPEED = 300f;
+	/** Fraction of {@link #getSpeed()} that a player moves backwards at. */
+	public static final float BACKWARD_SPEED_FACTOR = 0.25f;
+	/** Fraction of the movement velocity a player keeps gliding at after it stops moving. */
+	public static final float GLIDE_FACTOR = 0.5f;
+	/** Rate per second that a player's glide slows down at. */
+	public static final float GLIDE_DECAY = 10f / 3f;
 	
 	private TextureRegion texture;
 	private boolean isLocalPlayer;
 	private Polygon hitbox;
 	
-	public Player(final UUID id) {
+	private boolean movingForward, movingBackward, rotatingClockwise, rotatingCounterclockwise;
+	private float glideX, glideY;
+	
+	public Player(final int id) {
 		super(id);
-		setWidth(40);
-		setHeight(40);
+		setWidth(WIDTH);
+		setHeight(HEIGHT);
 		setOrigin(Align.center);
 		hitbox = new Polygon(new float[] {0, 0, getWidth(), 0, getWidth(), getHeight(), 0, getHeight()});
 		hitbox.setOrigin(getOriginX(), getOriginY());
@@ -37,11 +46,87 @@ public class Player extends NetActor {
 			texture = new TextureRegion(Main.assets.get("textures/player.png", Texture.class));
 	}
 	
-	public Player(final UUID id, boolean isLocalPlayer) {
+	public Player(final int id, boolean isLocalPlayer) {
 		this(id);
 		this.isLocalPlayer = isLocalPlayer;
 	}
 	
+	/**
+	 * Moves and rotates this player by integrating its velocity so that moving doesn't need any Actions.
+	 */
+	@Override
+	public void act(float delta) {
+		super.act(delta);
+		
+		float rotateAmount = 0f;
+		if(rotatingCounterclockwise)
+			rotateAmount += ROTATE_SPEED * delta;
+		if(rotatingClockwise)
+			rotateAmount -= ROTATE_SPEED * delta;
+		if(rotateAmount != 0f)
+			rotateBy(rotateAmount);
+		
+		float thrust = getThrust();
+		float moveX = getSpeedCompX() * thrust * delta + glideX * delta;
+		float moveY = getSpeedCompY() * thrust * delta + glideY * delta;
+		if(moveX != 0f || moveY != 0f)
+			moveBy(moveX, moveY);
+		
+		//slow down the glide until it stops
+		float glideScale = Math.max(0f, 1f - GLIDE_DECAY * delta);
+		glideX *= glideScale;
+		glideY *= glideScale;
+		if(Math.abs(glideX) < 1f && Math.abs(glideY) < 1f)
+			glideX = glideY = 0f;
+	}
+	
+	/**
+	 * @return Fraction of this player's speed that it's moving forward at. Negative if it's moving backwards.
+	 */
+	private float getThrust() {
+		float thrust = 0f;
+		if(movingForward)
+			thrust += 1f;
+		if(movingBackward)
+			thrust -= BACKWARD_SPEED_FACTOR;
+		return thrust;
+	}
+	
+	/**
+	 * Starts a glide in the direction this player is facing.
+	 * @param thrust Fraction of this player's speed that it was moving at. Negative if it was moving backwards.
+	 */
+	private void startGlide(float thrust) {
+		glideX = getSpeedCompX() * thrust * GLIDE_FACTOR;
+		glideY = getSpeedCompY() * thrust * GLIDE_FACTOR;
+	}
+	
+	/**
+	 * Makes this player move forward every frame until it is set to false. The player glides to a stop after.
+	 */
+	public void setMovingForward(boolean moving) {
+		if(movingForward && !moving)
+			startGlide(1f);
+		movingForward = moving;
+	}
+	
+	/**
+	 * Makes this player move backward every frame until it is set to false. The player glides to a stop after.
+	 */
+	public void setMovingBackward(boolean moving) {
+		if(movingBackward && !moving)
+			startGlide(-BACKWARD_SPEED_FACTOR);
+		movingBackward = moving;
+	}
+	
+	public void setRotatingClockwise(boolean rotating) {
+		rotatingClockwise = rotating;
+	}
+	
+	public void setRotatingCounterclockwise(boolean rotating) {
+		rotatingCounterclockwise = rotating;
+	}
+	
 	@Override
 	public void draw(Batch batch, float parentAlpha) {
 		batch.draw(texture, getX(), getY(), getOriginX(), getOriginY(), getWidth(), getHeight(), getScaleX(), getScaleY(), getRotation());
@@ -49,27 +134,17 @@ public class Player extends NetActor {
 	
 	@Override
 	public void positionChanged(float deltaX, float deltaY) {
+		hitbox.translate(deltaX, deltaY);
+		
 		if(isLocalPlayer()) {
-			if(ServerInterface.isConnected()) {
-				ServerInterface.updateLocalPlayer(this);
-			}
-			
 			//make camera follow player
 			getStage().getCamera().position.set(getX() + getOriginX(), getY() + getOriginY(), 1);
-			
-			hitbox.translate(deltaX, deltaY);
 		}
 	}
 	
 	@Override
 	public void rotationChanged(float deltaRot) {
-		if(isLocalPlayer()) {
-			if(ServerInterface.isConnected()) {
-				ServerInterface.updateLocalPlayer(this);
-			}
-			
-			hitbox.rotate(deltaRot);
-		}
+		hitbox.rotate(deltaRot);
 	}
 	
 	public Polygon getHitbox() {
@@ -0,0 +1,44 @@
+package com.fwumdesoft.shoot.net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads values that were written with a {@link BitWriter}.
+ */
+public class BitReader {
+	private ByteBuffer buffer;
+	private long scratch;
+	private int scratchBits;
+	
+	/**
+	 * Starts reading at the buffer's position.
+	 * @return This BitReader for method chaining.
+	 */
+	public BitReader set(ByteBuffer newBuffer) {
+		buffer = newBuffer;
+		scratch = 0L;
+		scratchBits = 0;
+		return this;
+	}
+	
+	/**
+	 * Reads an unsigned value.
+	 * @param bits Number of bits to read. Must be between 0 and 32.
+	 */
+	public int read(int bits) {
+		while(scratchBits < bits) {
+			scratch = scratch << 8 | buffer.get() & 0xFF;
+			scratchBits += 8;
+		}
+		scratchBits -= bits;
+		return (int)(scratch >>> scratchBits & (1L << bits) - 1);
+	}
+	
+	/**
+	 * Reads a two's complement value and sign extends it.
+	 * @param bits Number of bits to read. Must be between 1 and 32.
+	 */
+	public int readSigned(int bits) {
+		return read(bits) << 32 - bits >> 32 - bits;
+	}
+}
@@ -0,0 +1,56 @@
+package com.fwumdesoft.shoot.net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes values that aren't a whole number of bytes long into a ByteBuffer, most significant bit first.
+ * Bits are only written to the buffer once a whole byte is ready so {@link #flush()} must be called
+ * after the last value. Read the bits back with a {@link BitReader}.
+ */
+public class BitWriter {
+	private ByteBuffer buffer;
+	private long scratch;
+	private int scratchBits;
+	
+	/**
+	 * Starts writing at the buffer's position.
+	 * @return This BitWriter for method chaining.
+	 */
+	public BitWriter set(ByteBuffer newBuffer) {
+		buffer = newBuffer;
+		scratch = 0L;
+		scratchBits = 0;
+		return this;
+	}
+	
+	/**
+	 * Writes the low bits of a value.
+	 * @param bits Number of bits to write. Must be between 0 and 32.
+	 */
+	public void write(int value, int bits) {
+		scratch = scratch << bits | (value & 0xFFFFFFFFL) & ((1L << bits) - 1);
+		scratchBits += bits;
+		while(scratchBits >= 8) {
+			scratchBits -= 8;
+			buffer.put((byte)(scratch >>> scratchBits));
+		}
+	}
+	
+	/**
+	 * Writes any bits that don't fill a whole byte, padding them with zeros.
+	 */
+	public void flush() {
+		if(scratchBits > 0) {
+			buffer.put((byte)(scratch << 8 - scratchBits));
+			scratchBits = 0;
+		}
+		scratch = 0L;
+	}
+	
+	/**
+	 * @return Number of bits that can still be written before the buffer is full.
+	 */
+	public int bitsRemaining() {
+		return buffer.remaining() * 8 - scratchBits;
+	}
+}
@@ -0,0 +1,61 @@
+package com.fwumdesoft.shoot.net;
+
+import static com.fwumdesoft.shoot.net.NetConstants.*;
+import java.net.InetSocketAddress;
+
+/**
+ * Settings for a {@link ServerInterface}. Change the fields before creating a connection with it.
+ * <p>{@link #load(String...)} reads them with {@link NetSettings} using these names:
+ * <li>server: Host name or address of the server. Default {@link NetConstants#DEFAULT_SERVER_HOST}.
+ * <li>port: Port of the server. Default {@link NetConstants#DEFAULT_PORT}.
+ * <li>receiveBuffer: Size in bytes of the socket's receive buffer. 0 leaves the system default.
+ * <li>sendBuffer: Size in bytes of the socket's send buffer. 0 leaves the system default.
+ * <li>sendRate: Number of times per second the local player's state is sent.
+ */
+public class ClientConfig {
+	/** Big enough to hold the datagrams of a few ticks if the render thread falls behind. */
+	public static final int DEFAULT_RECEIVE_BUFFER_SIZE = 256 * 1024;
+	public static final int DEFAULT_SEND_BUFFER_SIZE = 64 * 1024;
+	
+	public String serverHost = DEFAULT_SERVER_HOST;
+	public int serverPort = DEFAULT_PORT;
+	public int receiveBufferSize = DEFAULT_RECEIVE_BUFFER_SIZE;
+	public int sendBufferSize = DEFAULT_SEND_BUFFER_SIZE;
+	public int sendRate = DEFAULT_CLIENT_SEND_RATE;
+	
+	/**
+	 * Reads the settings with {@link NetSettings}.
+	 * @param args Arguments that look like {@code name=value}.
+	 * @throws IllegalArgumentException If a setting isn't valid.
+	 */
+	public static ClientConfig load(String... args) {
+		NetSettings settings = new NetSettings(args);
+		ClientConfig config = new ClientConfig();
+		config.serverHost = settings.getString("server", config.serverHost);
+		config.serverPort = settings.getInt("port", config.serverPort);
+		config.receiveBufferSize = settings.getInt("receiveBuffer", config.receiveBufferSize);
+		config.sendBufferSize = settings.getInt("sendBuffer", config.sendBufferSize);
+		config.sendRate = settings.getInt("sendRate", config.sendRate);
+		config.validate();
+		return config;
+	}
+	
+	/**
+	 * @throws IllegalArgumentException If a setting isn't valid.
+	 */
+	public void validate() {
+		if(serverPort <= 0 || serverPort > 0xFFFF)
+			throw new IllegalArgumentException("port must be between 1 and 65535");
+		if(receiveBufferSize < 0 || sendBufferSize < 0)
+			throw new IllegalArgumentException("Socket buffer sizes can't be negative");
+		if(sendRate <= 0)
+			throw new IllegalArgumentException("sendRate must be positive");
+	}
+	
+	/**
+	 * @return The address of the server. Resolves {@link #serverHost} every time it's called.
+	 */
+	public InetSocketAddress getServerAddress() {
+		return new InetSocketAddress(serverHost, serverPort);
+	}
+}
@@ -0,0 +1,75 @@
+package com.fwumdesoft.shoot.net;
+
+/**
+ * Writes and reads a quantized field as the difference from its baseline value using as few bits as possible.
+ * Differences wrap around the field's bit width so angles that cross 0 still have a small difference.
+ * <p>Each field starts with a 2 bit width code:
+ * <li>0: The field didn't change and nothing else is sent.
+ * <li>1: A {@link #SMALL_DELTA_BITS} bit signed difference is sent.
+ * <li>2: A {@link #MEDIUM_DELTA_BITS} bit signed difference is sent.
+ * <li>3: The whole value is sent.
+ */
+public final class DeltaCodec {
+	private DeltaCodec() {}
+	
+	public static final int SMALL_DELTA_BITS = 6;
+	public static final int MEDIUM_DELTA_BITS = 12;
+	
+	/**
+	 * @param bits Bit width of the field.
+	 * @return The most bits {@link #write(BitWriter, int, int, int)} can write for a field.
+	 */
+	public static int maxBits(int bits) {
+		return 2 + bits;
+	}
+	
+	/**
+	 * Writes a field as the difference from its baseline value.
+	 * @param bits Bit width of the field.
+	 */
+	public static void write(BitWriter writer, int value, int baseline, int bits) {
+		int delta = wrap(value - baseline, bits);
+		if(delta == 0) {
+			writer.write(0, 2);
+		} else if(fits(delta, SMALL_DELTA_BITS)) {
+			writer.write(1, 2);
+			writer.write(delta, SMALL_DELTA_BITS);
+		} else if(MEDIUM_DELTA_BITS < bits && fits(delta, MEDIUM_DELTA_BITS)) {
+			writer.write(2, 2);
+			writer.write(delta, MEDIUM_DELTA_BITS);
+		} else {
+			writer.write(3, 2);
+			writer.write(value, bits);
+		}
+	}
+	
+	/**
+	 * Reads a field that was written with {@link #write(BitWriter, int, int, int)}.
+	 * @param bits Bit width of the field.
+	 */
+	public static int read(BitReader reader, int baseline, int bits) {
+		int mask = (1 << bits) - 1;
+		switch(reader.read(2))
+		{
+		case 0:
+			return baseline;
+		case 1:
+			return baseline + reader.readSigned(SMALL_DELTA_BITS) & mask;
+		case 2:
+			return baseline + reader.readSigned(MEDIUM_DELTA_BITS) & mask;
+		default:
+			return reader.read(bits);
+		}
+	}
+	
+	/**
+	 * Sign extends the low bits of a difference so it is the shortest way around the field's range.
+	 */
+	private static int wrap(int delta, int bits) {
+		return delta << 32 - bits >> 32 - bits;
+	}
+	
+	private static boolean fits(int value, int bits) {
+		return value >= -(1 << bits - 1) && value < 1 << bits - 1;
+	}
+}
@@ -1,78 +1,161 @@
 package com.fwumdesoft.shoot.net;
 
-import java.net.InetSocketAddress;
-import java.util.UUID;
-
 /**
  * <b>Proper Packet Structure:</b>
  * <li>4 bytes: These bytes indicate how long the data section of the packet is.
  * <li>1 byte: This byte is a message id that identifies the type of message being sent.
- * <li>16 bytes: These bytes represent the id of the client sending the message.
+ * <li>2 bytes: These bytes represent the unsigned session id of the client sending the message.
+ * The server assigns each client its session id when it connects.
  * <li>Remaining bytes: The remaining bytes have a length equivalent the first 4 bytes.
  * These bytes represent any data that is required by the message being sent.
  */
 public class NetConstants {
 	private NetConstants() {}
 	
-	public static final UUID NULL_ID = new UUID(0, 0);
+	/** netId that doesn't belong to any actor. Also used as the sender id of messages from the server. */
+	public static final int NULL_ID = 0;
+	/** Largest session id the server can assign to a client. */
+	public static final int MAX_SESSION_ID = 0xFFFF;
 	
-	/** Remote game server address. */
-	public static final InetSocketAddress SERVER_ADDR = new InetSocketAddress("45.33.68.145", 5555);
+	/** Remote game server that clients connect to unless they are configured otherwise. See {@link ClientConfig}. */
+	public static final String DEFAULT_SERVER_HOST = "45.33.68.145";
+	/** Port the server listens on unless it's configured otherwise. */
+	public static final int DEFAULT_PORT = 5555;
 	/** Time in milliseconds until a user is booted from the game server. */
 	public static final long HEARTBEAT_TIMEOUT = 15000L;
+	/** Default time in milliseconds a client can go without sending anything before it sends a heartbeat. */
+	public static final long HEARTBEAT_INTERVAL = 3000L;
+	/** Default number of simulation ticks per second that the server runs. */
+	public static final int DEFAULT_TICK_RATE = 60;
+	/** Default number of times per second that a client sends its player's state to the server. */
+	public static final int DEFAULT_CLIENT_SEND_RATE = 30;
+	
+	// World constants
+	/** Width of the world. Bolts outside of the world are removed. */
+	public static final float WORLD_WIDTH = 2000f;
+	/** Height of the world. Bolts outside of the world are removed. */
+	public static final float WORLD_HEIGHT = 1000f;
+	/** Distance outside of the world that positions can be sent without being clamped. */
+	public static final float WORLD_MARGIN = 500f;
+	/** Number of bits in a quantized x or y position. */
+	public static final int POSITION_BITS = 16;
+	/** Number of bits in a quantized rotation. */
+	public static final int ANGLE_BITS = 10;
+	/** Quantizes x positions for sending. Worst case error is about 0.023 units. */
+	public static final Quantizer X_QUANTIZER = new Quantizer(-WORLD_MARGIN, WORLD_WIDTH + WORLD_MARGIN, POSITION_BITS);
+	/** Quantizes y positions for sending. Worst case error is about 0.015 units. */
+	public static final Quantizer Y_QUANTIZER = new Quantizer(-WORLD_MARGIN, WORLD_HEIGHT + WORLD_MARGIN, POSITION_BITS);
+	/** Quantizes rotations in deg for sending. Worst case error is about 0.18 deg. */
+	public static final Quantizer ANGLE_QUANTIZER = Quantizer.angle(ANGLE_BITS);
 	
 	// Packet constants
-	/** Max length in bytes that a packet can send to and from the server. */
-	public static final int PACKET_LENGTH = 256;
+	/**
+	 * Max length in bytes that a packet can send to and from the server.
+	 * Kept below a typical ethernet MTU so packets are never fragmented.
+	 */
+	public static final int PACKET_LENGTH = 1400;
 	/** Start index of the dataLength chunk. */
 	public static final int DATA_LENGTH_OFFSET = 0;
 	/** Start index of the msgId chunk.  */
 	public static final int MSG_ID_OFFSET = 4;
 	/** Start index of the senderId chunk. */
-	public static final int UUID_OFFSET = 5;
+	public static final int SENDER_ID_OFFSET = 5;
 	/** Length of the header of packets sent to and from the server. */
-	public static final int HEADER_LENGTH = 21;
+	public static final int HEADER_LENGTH = 7;
 	
 	// Message Ids
-	/** Used for new player connections. */
+	/**
+	 * Used for new player connections. Clients send their senderId as {@link #NULL_ID} since they don't have one yet.
+	 * <li>8 bytes: The most significant bytes of the client's UUID. Only sent by clients.
+	 * <li>8 bytes: The least significant bytes of the client's UUID. Only sent by clients.
+	 */
 	public static final byte MSG_CONNECT = (byte)0x00;
 	/** Used to remove players. */
 	public static final byte MSG_DISCONNECT = (byte)0x01;
 	/** Used to tell the server that a client is still connected. */
 	public static final byte MSG_HEARTBEAT = (byte)0x02;
 	/**
-	 * <b>MSG_UPDATE_PLAYER data section structure:</b>
-	 * <li>4 bytes: The local player's x position.
-	 * <li>4 bytes: The local player's y position.
-	 * <li>4 bytes: The local player's rotation in deg.
+	 * Only sent by clients. The server sends the state of every player in {@link #MSG_SNAPSHOT}s.
+	 * <p><b>MSG_UPDATE_PLAYER data section structure:</b>
+	 * <li>2 bytes: The local player's x position quantized with {@link #X_QUANTIZER}.
+	 * <li>2 bytes: The local player's y position quantized with {@link #Y_QUANTIZER}.
+	 * <li>2 bytes: The local player's rotation quantized with {@link #ANGLE_QUANTIZER}.
 	 */
 	public static final byte MSG_UPDATE_PLAYER = (byte)0x03;
-	/** Used by the server to acknowledge a new connection. */
+	/** Used by the server to acknowledge a new connection. The senderId is the session id assigned to the client. */
 	public static final byte MSG_CONNECT_HANDSHAKE = (byte)0x04;
 	/** Used by the client to tell the server that a bolt has been fired.
-	 * <li>8 bytes: The bolt's most significant bytes of its netId.
-	 * <li>8 bytes: The bolt's least significant bytes of its netId.
-	 * <li>4 bytes: The bolt's x position.
-	 * <li>4 bytes: The bolt's y position.
-	 * <li>4 bytes: The bolt's rotation.
+	 * <li>4 bytes: The bolt's netId.
+	 * <li>2 bytes: The bolt's x position quantized with {@link #X_QUANTIZER}.
+	 * <li>2 bytes: The bolt's y position quantized with {@link #Y_QUANTIZER}.
+	 * <li>2 bytes: The bolt's rotation quantized with {@link #ANGLE_QUANTIZER}.
 	 * <li>4 bytes: the bolt's speed.
 	 */
 	public static final byte MSG_SPAWN_BOLT = (byte)0x05;
 	/**
-	 * Generic update packet that will update a specific actor for the client based on its netId.
-	 * <li>8 bytes: The actor's most significant bytes of its netId.
-	 * <li>8 bytes: The actor's least significant bytes of its netId.
-	 * <li>4 bytes: The actor's x position.
-	 * <li>4 bytes: The actor's y position.
-	 * <li>4 bytes: The actor's rotation in deg.
+	 * Retired. Actor state is sent in {@link #MSG_SNAPSHOT}s and neither side sends or handles this message anymore.
+	 * The id is kept so it isn't reused for a different message.
 	 */
 	public static final byte MSG_UPDATE = (byte)0x06;
 	/**
 	 * Used to remove a Bolt from the game regardless of if it was out of bounds or if it hit a player.
-	 * <li>8 bytes: The bolt's most significant bytes of its netId.
-	 * <li>8 bytes: The bolt's least significant bytes of its netId.
-	 * <li>8 bytes: The most significant bytes of the netId of the player that was hit. 0 if no player was hit.
-	 * <li>8 bytes: The least significant bytes of the netId of the player that was hit. 0 if no player was hit.
+	 * <li>4 bytes: The bolt's netId.
+	 * <li>2 bytes: The netId of the player that was hit. {@link #NULL_ID} if no player was hit.
 	 */
 	public static final byte MSG_REMOVE_BOLT = (byte)0x07;
+	/**
+	 * Sent by the server once per tick with the state of every actor that changed since the
+	 * baseline snapshot, which is the newest snapshot the client has acknowledged.
+	 * A snapshot that doesn't fit is split across several packets with the same sequence number.
+	 * <li>4 bytes: The snapshot's sequence number.
+	 * <li>4 bytes: The sequence number of the baseline or {@link #NO_SNAPSHOT} if there is no baseline.
+	 * <li>2 bytes: The index of this packet in the snapshot.
+	 * <li>2 bytes: The number of packets in the snapshot.
+	 * <li>2 bytes: The number of entries in this packet.
+	 * <li>Remaining bytes: The entries packed with a {@link BitWriter}. Each entry starts with:
+	 * <ul><li>2 bits: The entry type.
+	 * <li>32 bits: The actor's netId.</ul>
+	 * Followed by the data for the entry type:
+	 * <ul><li>{@link #SNAPSHOT_ENTRY_FULL}: The actor's x, y and rotation quantized with
+	 * {@link #X_QUANTIZER}, {@link #Y_QUANTIZER} and {@link #ANGLE_QUANTIZER}.
+	 * <li>{@link #SNAPSHOT_ENTRY_MOVING}: The actor's x and y with {@link #SUBSTEP_BITS} extra bits of
+	 * precision, its quantized rotation and its velocity in the same units per tick, {@link #VELOCITY_BITS} signed bits each.
+	 * <li>{@link #SNAPSHOT_ENTRY_DELTA}: The x, y and rotation written with {@link DeltaCodec} as the difference
+	 * from their predicted values. An actor that moves is predicted to be where its velocity took it since the
+	 * baseline and its x and y are written with the extra precision. Any other actor is predicted to be where it
+	 * was in the baseline.
+	 * <li>{@link #SNAPSHOT_ENTRY_REMOVED}: Nothing. The actor was removed since the baseline.</ul>
+	 * Actors that are exactly where they were predicted to be are not sent. See {@link SnapshotState}.
+	 */
+	public static final byte MSG_SNAPSHOT = (byte)0x08;
+	/**
+	 * Sent by the client once it received every packet of a {@link #MSG_SNAPSHOT}.
+	 * <li>4 bytes: The snapshot's sequence number.
+	 */
+	public static final byte MSG_SNAPSHOT_ACK = (byte)0x09;
+	
+	// Snapshot constants
+	/** Sequence number that means there is no snapshot. */
+	public static final int NO_SNAPSHOT = -1;
+	/** Number of snapshots that the server and client remember to use as baselines. Must be a power of 2. */
+	public static final int SNAPSHOT_HISTORY_LENGTH = 32;
+	/** Entry type of an actor that is new since the baseline. */
+	public static final int SNAPSHOT_ENTRY_FULL = 0;
+	/** Entry type of an actor that changed since the baseline. */
+	public static final int SNAPSHOT_ENTRY_DELTA = 1;
+	/** Entry type of an actor that was removed since the baseline. */
+	public static final int SNAPSHOT_ENTRY_REMOVED = 2;
+	/** Entry type of an actor that moves and is new or changed its velocity since the baseline. */
+	public static final int SNAPSHOT_ENTRY_MOVING = 3;
+	/** Number of bits below a quantization step that the positions of moving actors are kept with in snapshots. */
+	public static final int SUBSTEP_BITS = 8;
+	/** Number of bits in a position that includes the {@link #SUBSTEP_BITS}. */
+	public static final int FIXED_POSITION_BITS = POSITION_BITS + SUBSTEP_BITS;
+	/** Number of bits in a velocity in a snapshot. It is signed and has {@link #SUBSTEP_BITS} bits below a step. */
+	public static final int VELOCITY_BITS = 24;
+	/** Length in bytes of the data section of a {@link #MSG_SNAPSHOT} before the entries. */
+	public static final int SNAPSHOT_HEADER_LENGTH = 14;
+	/** Max length in bits of one entry in a {@link #MSG_SNAPSHOT}. */
+	public static final int SNAPSHOT_MAX_ENTRY_BITS = 2 + 32 + Math.max(2 * DeltaCodec.maxBits(FIXED_POSITION_BITS)
+			+ DeltaCodec.maxBits(ANGLE_BITS), 2 * FIXED_POSITION_BITS + ANGLE_BITS + 2 * VELOCITY_BITS);
 }
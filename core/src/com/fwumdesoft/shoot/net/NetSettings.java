@@ -0,0 +1,98 @@
+package com.fwumdesoft.shoot.net;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Settings read from, in order of increasing priority:
+ * <li>A properties file. {@value #DEFAULT_FILE} in the working directory if it exists, or the file given
+ * by the {@code config} argument or the {@code shoot.config} system property.
+ * <li>System properties named {@value #SYSTEM_PROPERTY_PREFIX} followed by the setting's name,
+ * for example {@code -Dshoot.port=5556}.
+ * <li>Arguments that look like {@code name=value}, for example {@code port=5556}.
+ * <p>Used to build a {@link ClientConfig} or a {@code ServerConfig} before the application starts.
+ */
+public class NetSettings {
+	/** File that settings are read from if no other file is given. */
+	public static final String DEFAULT_FILE = "shoot.properties";
+	/** Prefix of the system properties that are read as settings. */
+	public static final String SYSTEM_PROPERTY_PREFIX = "shoot.";
+	
+	private final Properties properties = new Properties();
+	
+	/**
+	 * Reads the settings file, the system properties and the arguments.
+	 * @param args Arguments that look like {@code name=value}.
+	 * @throws IllegalArgumentException If an argument doesn't look like {@code name=value} or the settings file couldn't be read.
+	 */
+	public NetSettings(String... args) {
+		String file = System.getProperty(SYSTEM_PROPERTY_PREFIX + "config");
+		for(String arg : args) {
+			if(arg.startsWith("config="))
+				file = arg.substring("config=".length());
+		}
+		Path path = Paths.get(file == null ? DEFAULT_FILE : file);
+		if(file != null || Files.isRegularFile(path)) {
+			try(Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+				properties.load(reader);
+			} catch(IOException e) {
+				throw new IllegalArgumentException("Failed to read the settings file " + path, e);
+			}
+		}
+		
+		for(String name : System.getProperties().stringPropertyNames()) {
+			if(name.startsWith(SYSTEM_PROPERTY_PREFIX))
+				properties.setProperty(name.substring(SYSTEM_PROPERTY_PREFIX.length()), System.getProperty(name));
+		}
+		
+		for(String arg : args) {
+			int split = arg.indexOf('=');
+			if(split <= 0)
+				throw new IllegalArgumentException("Arguments must look like name=value: " + arg);
+			properties.setProperty(arg.substring(0, split).trim(), arg.substring(split + 1).trim());
+		}
+	}
+	
+	/**
+	 * @return The setting or defaultValue if it isn't set.
+	 */
+	public String getString(String name, String defaultValue) {
+		String value = properties.getProperty(name);
+		return value == null || value.isEmpty() ? defaultValue : value;
+	}
+	
+	/**
+	 * @return The setting or defaultValue if it isn't set.
+	 * @throws IllegalArgumentException If the setting isn't an int.
+	 */
+	public int getInt(String name, int defaultValue) {
+		String value = getString(name, null);
+		if(value == null)
+			return defaultValue;
+		try {
+			return Integer.parseInt(value);
+		} catch(NumberFormatException e) {
+			throw new IllegalArgumentException(name + " must be an int: " + value);
+		}
+	}
+	
+	/**
+	 * @return The setting or defaultValue if it isn't set.
+	 * @throws IllegalArgumentException If the setting isn't a float.
+	 */
+	public float getFloat(String name, float defaultValue) {
+		String value = getString(name, null);
+		if(value == null)
+			return defaultValue;
+		try {
+			return Float.parseFloat(value);
+		} catch(NumberFormatException e) {
+			throw new IllegalArgumentException(name + " must be a number: " + value);
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package com.fwumdesoft.shoot.net;
+
+/**
+ * Converts floats in a bounded range to unsigned fixed point integers with a set number of bits
+ * so they can be sent using fewer bytes than a float.
+ * <p>The worst case error of a value that is in range is half of the quantizer's step size plus one ulp
+ * of the largest value in the range, which is returned by {@link #getMaxError()}. The ulp covers rounding
+ * the dequantized value to the nearest float. Values outside of the range are clamped to it
+ * unless the quantizer wraps, in which case they are wrapped back into the range like an angle.
+ */
+public class Quantizer {
+	private final float min, max;
+	private final int bits;
+	private final int maxValue;
+	private final boolean wrap;
+	private final double step;
+	private final float maxError;
+	
+	/**
+	 * Creates a quantizer that clamps values to [min, max].
+	 * @param bits Number of bits in a quantized value. Must be between 1 and 31.
+	 */
+	public Quantizer(float min, float max, int bits) {
+		this(min, max, bits, false);
+	}
+	
+	private Quantizer(float min, float max, int bits, boolean wrap) {
+		if(bits < 1 || bits > 31)
+			throw new IllegalArgumentException("bits must be between 1 and 31");
+		if(max <= min)
+			throw new IllegalArgumentException("max must be greater than min");
+		this.min = min;
+		this.max = max;
+		this.bits = bits;
+		this.wrap = wrap;
+		maxValue = (1 << bits) - 1;
+		//wrapping values use every step in [min, max) since max is the same as min
+		step = ((double)max - min) / (wrap ? maxValue + 1 : maxValue);
+		maxError = (float)(step / 2 + Math.ulp(Math.max(Math.abs(min), Math.abs(max))));
+	}
+	
+	/**
+	 * Creates a quantizer for angles in degrees. Angles outside of [0, 360) are wrapped into it.
+	 * @param bits Number of bits in a quantized angle. Must be between 1 and 31.
+	 */
+	public static Quantizer angle(int bits) {
+		return new Quantizer(0f, 360f, bits, true);
+	}
+	
+	/**
+	 * @return The quantized value between 0 and {@link #getMaxValue()}.
+	 */
+	public int quantize(float value) {
+		if(wrap) {
+			double steps = ((double)value - min) / step;
+			return (int)Math.round(steps - Math.floor(steps / (maxValue + 1)) * (maxValue + 1)) & maxValue;
+		}
+		if(value <= min)
+			return 0;
+		if(value >= max)
+			return maxValue;
+		return (int)Math.round(((double)value - min) / step);
+	}
+	
+	/**
+	 * @param quantized A value returned by {@link #quantize(float)}. Bits above {@link #getBits()} are ignored.
+	 * @return The float the quantized value represents.
+	 */
+	public float dequantize(int quantized) {
+		return (float)(min + (quantized & maxValue) * step);
+	}
+	
+	/**
+	 * @return The largest difference between an in range value and its dequantized value. This is half a step
+	 * plus one ulp of the largest value in the range, since the dequantized value is rounded to a float.
+	 */
+	public float getMaxError() {
+		return maxError;
+	}
+	
+	/** @return The difference between two neighboring dequantized values. */
+	public double getStep() {
+		return step;
+	}
+	
+	public int getBits() {
+		return bits;
+	}
+	
+	public int getMaxValue() {
+		return maxValue;
+	}
+}
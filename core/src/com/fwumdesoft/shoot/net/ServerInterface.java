@@ -4,9 +4,11 @@ import static com.fwumdesoft.shoot.net.NetConstants.*;
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 import java.util.UUID;
 import com.badlogic.gdx.Gdx;
 import com.fwumdesoft.shoot.model.Bolt;
@@ -14,53 +16,94 @@ import com.fwumdesoft.shoot.model.Player;
 
 /**
  * Provides a means for the client to communicate with the server.
+ * <p>Each ServerInterface is one connection with its own socket and UUID, so one process can hold several
+ * connections at once and can reconnect by calling {@link #connect()} again after {@link #disconnect()}.
+ * Messages can be sent from any thread without locking: every thread that sends gets its own buffer.
+ * Only one thread should call {@link #receiveData()}.
  */
 public class ServerInterface {
-	private static final UUID clientId;
+	/** Identifies this client to the server until it is assigned a session id. */
+	private final UUID clientUuid = UUID.randomUUID();
+	private final InetSocketAddress serverAddress;
+	/** Session id assigned by the server in the {@link NetConstants#MSG_CONNECT_HANDSHAKE}. */
+	private volatile int clientId = NULL_ID;
+	/** Used to give each Bolt this client fires a unique netId. */
+	private int boltCounter;
 	
-	private static DatagramSocket socket;
-	/** Packet with information to be sent to the server. */
-	private static DatagramPacket sndPacket;
-	/** Packet with information received from the server. */
-	private static DatagramPacket rcvPacket;
-	private static ByteBuffer sndBuffer;
+	/** Messages are sent through the channel, which doesn't allocate for each send like a DatagramSocket can. */
+	private final DatagramChannel channel;
+	/** The channel's socket. Used to connect and to receive with a timeout. */
+	private final DatagramSocket socket;
+	/** Buffer that messages to the server are written into, one for each thread that sends. */
+	private final ThreadLocal<ByteBuffer> outgoing = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(PACKET_LENGTH));
+	/** Packet with information received from the server. Only referenced by the thread calling {@link #receiveData()}. */
+	private final DatagramPacket rcvPacket = new DatagramPacket(new byte[PACKET_LENGTH], PACKET_LENGTH);
+	/** Read only view of {@link #rcvPacket}'s data that is handed out for every datagram. */
+	private final ByteBuffer rcvBuffer = ByteBuffer.wrap(rcvPacket.getData()).asReadOnlyBuffer();
+	/** {@link System#currentTimeMillis()} when the last packet was sent to the server. */
+	private volatile long lastSendTime;
+	/** Time in milliseconds the client can go without sending anything before it sends a heartbeat. */
+	private volatile long heartbeatInterval = HEARTBEAT_INTERVAL;
+	/** Number of times per second the local player's state is sent to the server. */
+	private volatile int sendRate = DEFAULT_CLIENT_SEND_RATE;
+	/** Quantized state of the local player in the last {@link NetConstants#MSG_UPDATE_PLAYER}. */
+	private int lastSentX = -1, lastSentY = -1, lastSentRotation = -1;
+	private long lastPlayerUpdateTime;
 	
-	static {
-		clientId = UUID.randomUUID();
+	/**
+	 * Creates a connection with the default {@link ClientConfig}.
+	 */
+	public ServerInterface() {
+		this(new ClientConfig());
+	}
+	
+	/**
+	 * Creates a connection to a server. Nothing is sent until {@link #connect()} is called.
+	 * @param config Address of the server and socket settings. Read once here.
+	 * @throws IllegalStateException If the socket could not be created.
+	 */
+	public ServerInterface(final ClientConfig config) {
+		serverAddress = config.getServerAddress();
+		sendRate = config.sendRate;
 		try {
 			//create required data to establish a connection
-			socket = new DatagramSocket();
-			socket.setReceiveBufferSize(PACKET_LENGTH);
-			socket.setSendBufferSize(PACKET_LENGTH);
+			channel = DatagramChannel.open();
+			socket = channel.socket();
+			//the server coalesces messages into full datagrams and sends several per tick, so the buffer
+			//has to hold more than one of them
+			if(config.receiveBufferSize > 0)
+				socket.setReceiveBufferSize(config.receiveBufferSize);
+			if(config.sendBufferSize > 0)
+				socket.setSendBufferSize(config.sendBufferSize);
 			socket.setSoTimeout(1000);
-			rcvPacket = new DatagramPacket(new byte[PACKET_LENGTH], PACKET_LENGTH);
-			sndPacket = new DatagramPacket(new byte[PACKET_LENGTH], PACKET_LENGTH, SERVER_ADDR);
-			sndBuffer = ByteBuffer.wrap(sndPacket.getData());
-			Gdx.app.log("ServerInterface", "Client ID: " + clientId);
-		} catch(SocketException e) {
+		} catch(IOException e) {
 			Gdx.app.error("ServerInterface", "Socket could not be created");
+			throw new IllegalStateException("Failed to create a socket", e);
 		}
+		Gdx.app.log("ServerInterface", "Client UUID: " + clientUuid + " server: " + serverAddress);
 	}
 	
 	/**
 	 * Sends a {@code NetConstants.MSG_CONNECT} packet to the server.
 	 * <p><b>Precondition:</b> Client isn't connected to the server.
 	 */
-	public static void connect() {
+	public void connect() {
 		if(isConnected())
 			throw new IllegalStateException("Client is already connected to the server");
 		try {
-			socket.connect(SERVER_ADDR);
+			socket.connect(serverAddress);
 		} catch(SocketException e) {
 			Gdx.app.error("ServerInterface", "Socket could not connect to the server");
 			throw new IllegalStateException("Failed to establish a connection to the server");
 		}
 		
 		//send a MSG_CONNECT to the server
-		synchronized(sndPacket.getData()) {
-			createHeader(0, MSG_CONNECT);
-			send(MSG_CONNECT);
-		}
+		clientId = NULL_ID;
+		lastSentX = lastSentY = lastSentRotation = -1;
+		ByteBuffer out = createHeader(16, MSG_CONNECT); //2 longs
+		out.putLong(clientUuid.getMostSignificantBits());
+		out.putLong(clientUuid.getLeastSignificantBits());
+		send(out, MSG_CONNECT);
 		
 		Gdx.app.log("ServerInterface", "Sent a MSG_CONNECT packet");
 	}
@@ -69,58 +112,102 @@ public class ServerInterface {
 	 * Sends a {@code NetConstants.MSG_DISCONNECT} packet to the server.
 	 * <p><b>Precondition:</b> Client is connected to the server.
 	 */
-	public static void disconnect() {
+	public void disconnect() {
 		if(!isConnected())
 			throw new IllegalStateException("Client isn't connected to the server");
 		
 		//send a MSG_DISCONNECT to the server
-		synchronized(sndPacket.getData()) {
-			createHeader(0, MSG_DISCONNECT);
-			send(MSG_DISCONNECT);
-		}
+		ByteBuffer out = createHeader(0, MSG_DISCONNECT);
+		send(out, MSG_DISCONNECT);
 		
 		Gdx.app.log("ServerInterface", "Sent a MSG_DISCONNECT packet");
 		socket.disconnect();
+		clientId = NULL_ID;
 	}
 	
 	/**
-	 * Sends a {@link NetConstants#MSG_HEARTBEAT} packet to the server.
+	 * Sends a {@link NetConstants#MSG_HEARTBEAT} packet to the server if nothing else was sent within the
+	 * heartbeat interval. The server treats every message as a sign that the client is still connected,
+	 * so this can be called every frame.
 	 * <p><b>Precondition:</b> Client is connected to the server.
+	 * @return true if a heartbeat was sent.
 	 */
-	public static void heartbeat() {
+	public boolean heartbeat() {
 		if(!isConnected())
 			throw new IllegalStateException("Client isn't connected to the server");
+		if(System.currentTimeMillis() - lastSendTime < heartbeatInterval)
+			return false;
 		
 		//send a MSG_HEARTBEAT to the server
-		synchronized(sndPacket.getData()) {
-			createHeader(0, MSG_HEARTBEAT);
-			send(MSG_HEARTBEAT);
-		}
+		ByteBuffer out = createHeader(0, MSG_HEARTBEAT);
+		send(out, MSG_HEARTBEAT);
 		
 //		Gdx.app.debug("ServerInterface", "Sent a MSG_HEARTBEAT packet");
+		return true;
+	}
+	
+	/**
+	 * Sets how long the client can go without sending anything before {@link #heartbeat()} sends a heartbeat.
+	 * @param interval Time in milliseconds. Must be less than {@link NetConstants#HEARTBEAT_TIMEOUT}.
+	 */
+	public void setHeartbeatInterval(long interval) {
+		if(interval < 0 || interval >= HEARTBEAT_TIMEOUT)
+			throw new IllegalArgumentException("interval must be between 0 and HEARTBEAT_TIMEOUT");
+		heartbeatInterval = interval;
+	}
+	
+	public long getHeartbeatInterval() {
+		return heartbeatInterval;
 	}
 	
 	/**
 	 * Sends a {@link NetConstants#MSG_UPDATE_PLAYER} packet to the server.
 	 * <p>Sends the player location and rotation to the server so other players know
-	 * the location and rotation of the localPlayer.
+	 * the location and rotation of the localPlayer. Should be called once per client network tick, see {@link #getSendRate()}.
+	 * Nothing is sent if the quantized state is the same as the last one sent, except once every heartbeat
+	 * interval so the server recovers from a lost update.
 	 * <p><b>Precondition:</b> Client is connected to the server.
 	 * @param localPlayer This computer's locally controlled player.
+	 * @return true if an update was sent.
 	 */
-	public static void updateLocalPlayer(final Player localPlayer) {
+	public boolean updateLocalPlayer(final Player localPlayer) {
 		if(!isConnected())
 			throw new IllegalStateException("Client isn't connected to the server");
 		
+		final int x = X_QUANTIZER.quantize(localPlayer.getX());
+		final int y = Y_QUANTIZER.quantize(localPlayer.getY());
+		final int rotation = ANGLE_QUANTIZER.quantize(localPlayer.getRotation());
+		final long time = System.currentTimeMillis();
+		if(x == lastSentX && y == lastSentY && rotation == lastSentRotation && time - lastPlayerUpdateTime < heartbeatInterval)
+			return false; //the server can't tell the difference
+		
 		//Send a MSG_UPDATE_PLAYER to the server
-		synchronized(sndPacket.getData()) {
-			createHeader(12, MSG_UPDATE_PLAYER); //3 floats
-			sndBuffer.putFloat(localPlayer.getX());
-			sndBuffer.putFloat(localPlayer.getY());
-			sndBuffer.putFloat(localPlayer.getRotation());
-			send(MSG_UPDATE_PLAYER);
-		}
+		ByteBuffer out = createHeader(6, MSG_UPDATE_PLAYER); //3 shorts
+		out.putShort((short)x);
+		out.putShort((short)y);
+		out.putShort((short)rotation);
+		send(out, MSG_UPDATE_PLAYER);
+		lastSentX = x;
+		lastSentY = y;
+		lastSentRotation = rotation;
+		lastPlayerUpdateTime = time;
 		
 		Gdx.app.debug("ServerInterface", "Sent a MSG_UPDATE_PLAYER packet");
+		return true;
+	}
+	
+	/**
+	 * Sets how many times per second the local player's state is sent to the server.
+	 * @param rate Sends per second. Must be positive.
+	 */
+	public void setSendRate(int rate) {
+		if(rate <= 0)
+			throw new IllegalArgumentException("rate must be positive");
+		sendRate = rate;
+	}
+	
+	public int getSendRate() {
+		return sendRate;
 	}
 	
 	/**
@@ -129,48 +216,65 @@ public class ServerInterface {
 	 * <p><b>Precondition:</b> Client is connected to the server.
 	 * @param Bolt Bolt that was spawned.
 	 */
-	public static void spawnBolt(Bolt bolt) {
+	public void spawnBolt(Bolt bolt) {
 		if(!isConnected())
 			throw new IllegalStateException("Client isn't connected to the server");
 		
 		//Send a MSG_SPAWN_BOLT packet to the server
-		synchronized(sndPacket.getData()) {
-			createHeader(32, MSG_SPAWN_BOLT); //2 longs & 4 floats
-			sndBuffer.putLong(bolt.getNetId().getMostSignificantBits());
-			sndBuffer.putLong(bolt.getNetId().getLeastSignificantBits());
-			sndBuffer.putFloat(bolt.getX());
-			sndBuffer.putFloat(bolt.getY());
-			sndBuffer.putFloat(bolt.getRotation());
-			sndBuffer.putFloat(bolt.getSpeed());
-			send(MSG_SPAWN_BOLT);
-		}
+		ByteBuffer out = createHeader(14, MSG_SPAWN_BOLT); //1 int, 3 shorts & 1 float
+		out.putInt(bolt.getNetId());
+		out.putShort((short)X_QUANTIZER.quantize(bolt.getX()));
+		out.putShort((short)Y_QUANTIZER.quantize(bolt.getY()));
+		out.putShort((short)ANGLE_QUANTIZER.quantize(bolt.getRotation()));
+		out.putFloat(bolt.getSpeed());
+		send(out, MSG_SPAWN_BOLT);
 		
 		Gdx.app.debug("ServerInterface", "Sent a MSG_SPAWN_BOLT packet");
 	}
 	
+	/**
+	 * Sends a {@link NetConstants#MSG_SNAPSHOT_ACK} packet to the server.
+	 * <p>Tells the server that every packet of a snapshot was received so later
+	 * snapshots can be delta encoded against it.
+	 * <p><b>Precondition:</b> Client is connected to the server.
+	 * @param sequence Sequence number of the snapshot.
+	 */
+	public void acknowledgeSnapshot(int sequence) {
+		if(!isConnected())
+			throw new IllegalStateException("Client isn't connected to the server");
+		
+		//Send a MSG_SNAPSHOT_ACK packet to the server
+		ByteBuffer out = createHeader(4, MSG_SNAPSHOT_ACK); //1 int
+		out.putInt(sequence);
+		send(out, MSG_SNAPSHOT_ACK);
+	}
+	
 	/**
 	 * Sets up the header the packet to be sent to the server.
-	 * <p><b>Postcondition:</b> The length of the packet will be set appropriately. 
 	 * @param dataLength Length of the data chunk of the packet.
 	 * @param msgId Id of the message being sent.
+	 * @return The calling thread's buffer positioned after the header.
 	 */
-	private static void createHeader(int dataLength, byte msgId) {
-		sndBuffer.rewind();
-		sndBuffer.putInt(dataLength);
-		sndBuffer.put(msgId);
-		sndBuffer.putLong(clientId.getMostSignificantBits());
-		sndBuffer.putLong(clientId.getLeastSignificantBits());
-		sndPacket.setLength(HEADER_LENGTH + dataLength);
+	private ByteBuffer createHeader(int dataLength, byte msgId) {
+		final ByteBuffer out = outgoing.get();
+		out.clear();
+		out.putInt(dataLength);
+		out.put(msgId);
+		out.putShort((short)clientId);
+		return out;
 	}
 	
 	/**
 	 * Sends the packet to the server.
+	 * @param out Buffer returned by {@link #createHeader(int, byte)} after the data was written.
 	 * @param msgId gives the method a hint to know what type of message it is sending.
 	 * Useful for debugging.
 	 */
-	private static void send(byte msgId) {
+	private void send(ByteBuffer out, byte msgId) {
+		out.flip();
 		try {
-			socket.send(sndPacket);
+			channel.write(out);
+			lastSendTime = System.currentTimeMillis();
 		} catch(IOException e) {
 			Gdx.app.log("ServerInterface", "Failed to send a packet. id: " + msgId);
 		}
@@ -178,11 +282,15 @@ public class ServerInterface {
 	
 	/**
 	 * Data in this ByteBuffer is read only. This method is blocking.
+	 * <p>The same ByteBuffer is returned for every datagram so receiving doesn't allocate. Its contents are
+	 * only valid until the next call.
 	 * @return The ByteBuffer of the data in the {@link #rcvPacket} or null is the message failed to be received.
+	 * Its position is 0 and its limit is the length of the received datagram, which can hold several messages.
+	 * Also returns null if the client isn't connected, which can happen while another thread closes it.
 	 */
-	public static ByteBuffer receiveData() {
+	public ByteBuffer receiveData() {
 		if(!isConnected())
-			throw new IllegalStateException("Client isn't connected to the server");
+			return null;
 		try {
 			rcvPacket.setLength(PACKET_LENGTH);
 			socket.receive(rcvPacket);
@@ -193,18 +301,54 @@ public class ServerInterface {
 			Gdx.app.error("ServerInterface", "Failed to receive a packet");
 			return null;
 		}
-		return ByteBuffer.wrap(rcvPacket.getData()).asReadOnlyBuffer();
+		rcvBuffer.clear();
+		rcvBuffer.limit(rcvPacket.getLength());
+		return rcvBuffer;
 	}
 	
 	/**
 	 * @return The connection state of the DatagramSocket.
 	 * @see DatagramSocket#isConnected()
 	 */
-	public static boolean isConnected() {
-		return socket != null && socket.isConnected();
+	public boolean isConnected() {
+		return !socket.isClosed() && socket.isConnected();
 	}
 	
-	public static UUID getClientId() {
+	/**
+	 * Disconnects from the server if connected and releases the socket. This connection can't be used afterwards.
+	 */
+	public void close() {
+		if(isConnected())
+			disconnect();
+		socket.close();
+	}
+	
+	/**
+	 * Reads a {@link NetConstants#MSG_CONNECT_HANDSHAKE} and remembers the session id the server assigned.
+	 * @param buffer A packet received from the server.
+	 * @return true if the packet was a MSG_CONNECT_HANDSHAKE.
+	 */
+	public boolean completeHandshake(ByteBuffer buffer) {
+		if(buffer.get(MSG_ID_OFFSET) != MSG_CONNECT_HANDSHAKE)
+			return false;
+		clientId = buffer.getShort(SENDER_ID_OFFSET) & 0xFFFF;
+		Gdx.app.log("ServerInterface", "Client ID: " + clientId);
+		return true;
+	}
+	
+	/**
+	 * Creates a netId for a new Bolt fired by this client. The netId has this client's session id in
+	 * its upper 16 bits so it can't collide with a netId created by another client.
+	 * @return A new netId.
+	 */
+	public int nextBoltId() {
+		return clientId << 16 | (++boltCounter & 0xFFFF);
+	}
+	
+	/**
+	 * @return The session id the server assigned to this client or {@link NetConstants#NULL_ID} if it isn't connected.
+	 */
+	public int getClientId() {
 		return clientId;
 	}
 }
@@ -0,0 +1,162 @@
+package com.fwumdesoft.shoot.net;
+
+import static com.fwumdesoft.shoot.net.NetConstants.*;
+import java.nio.ByteBuffer;
+import com.badlogic.gdx.utils.Bits;
+
+/**
+ * Decodes {@link NetConstants#MSG_SNAPSHOT} packets on the client.
+ * <p>Remembers the last {@link NetConstants#SNAPSHOT_HISTORY_LENGTH} complete snapshots so packets that
+ * were delta encoded against one of them can be decoded. A snapshot is complete once every one of
+ * its packets has been received, and only complete snapshots should be acknowledged to the server.
+ * Only use a SnapshotDecoder from one thread.
+ */
+public class SnapshotDecoder {
+	private final SnapshotState[] history = new SnapshotState[SNAPSHOT_HISTORY_LENGTH];
+	private int lastCompletedSequence = NO_SNAPSHOT;
+	
+	/** The snapshot whose packets are being received. */
+	private final SnapshotState pending = new SnapshotState();
+	private final Bits receivedPackets = new Bits();
+	private int pendingBaseline = NO_SNAPSHOT;
+	private int receivedPacketCount;
+	private final BitReader reader = new BitReader();
+	
+	public SnapshotDecoder() {
+		for(int i = 0; i < history.length; i++)
+			history[i] = new SnapshotState();
+	}
+	
+	/**
+	 * Decodes the data section of a {@link NetConstants#MSG_SNAPSHOT} packet and passes the state of every
+	 * actor in it to the listener. Packets that arrived out of order or whose baseline is no longer
+	 * remembered are ignored.
+	 * @param data Buffer positioned at the start of the data section.
+	 * @param listener Receives the new state of each actor in the packet and every actor that was removed.
+	 * @return true if this packet completed a snapshot. {@link #getLastCompletedSequence()} should then be acknowledged.
+	 */
+	public boolean decode(ByteBuffer data, Listener listener) {
+		final int sequence = data.getInt();
+		final int baselineSequence = data.getInt();
+		final int packetIndex = data.getShort() & 0xFFFF;
+		final int packetCount = data.getShort() & 0xFFFF;
+		final int entryCount = data.getShort() & 0xFFFF;
+		
+		//ignore snapshots older than one that is already complete
+		if(lastCompletedSequence != NO_SNAPSHOT && sequence - lastCompletedSequence <= 0)
+			return false;
+		
+		SnapshotState baseline = null;
+		if(baselineSequence != NO_SNAPSHOT) {
+			baseline = history[baselineSequence & (SNAPSHOT_HISTORY_LENGTH - 1)];
+			if(baseline.getSequence() != baselineSequence)
+				return false;
+		}
+		
+		if(pending.getSequence() != sequence) {
+			//ignore packets from a snapshot older than the one being received
+			if(pending.getSequence() != NO_SNAPSHOT && sequence - pending.getSequence() < 0)
+				return false;
+			pending.set(baseline, sequence);
+			//actors that moved exactly as predicted aren't sent, so move every one of them first
+			if(baseline != null)
+				pending.advance(sequence - baselineSequence);
+			pendingBaseline = baselineSequence;
+			receivedPackets.clear();
+			receivedPacketCount = 0;
+		} else if(pendingBaseline != baselineSequence || receivedPackets.get(packetIndex)) {
+			return false;
+		}
+		
+		reader.set(data);
+		for(int i = 0; i < entryCount; i++) {
+			final int type = reader.read(2);
+			final int netId = reader.read(32);
+			int x, y, rot;
+			switch(type)
+			{
+			case SNAPSHOT_ENTRY_FULL:
+				x = reader.read(POSITION_BITS);
+				y = reader.read(POSITION_BITS);
+				rot = reader.read(ANGLE_BITS);
+				pending.put(netId, x, y, rot);
+				listener.updated(netId, X_QUANTIZER.dequantize(x), Y_QUANTIZER.dequantize(y), ANGLE_QUANTIZER.dequantize(rot));
+				break;
+			case SNAPSHOT_ENTRY_MOVING:
+				x = reader.read(FIXED_POSITION_BITS);
+				y = reader.read(FIXED_POSITION_BITS);
+				rot = reader.read(ANGLE_BITS);
+				pending.putMoving(netId, x, y, rot, reader.readSigned(VELOCITY_BITS), reader.readSigned(VELOCITY_BITS));
+				updated(listener, netId);
+				break;
+			case SNAPSHOT_ENTRY_DELTA:
+				int index = baseline == null ? -1 : baseline.indexOf(netId);
+				if(index < 0) { //the server and client disagree about the baseline so give up on this snapshot
+					pending.clear(NO_SNAPSHOT);
+					return false;
+				}
+				if(baseline.isMoving(index)) {
+					//the position is the difference from where the velocity took the actor since the baseline
+					final int ticks = sequence - baselineSequence;
+					x = DeltaCodec.read(reader, baseline.predictX(index, ticks), FIXED_POSITION_BITS);
+					y = DeltaCodec.read(reader, baseline.predictY(index, ticks), FIXED_POSITION_BITS);
+					rot = DeltaCodec.read(reader, baseline.getRotation(index), ANGLE_BITS);
+					pending.putMoving(netId, x, y, rot, baseline.getVelocityX(index), baseline.getVelocityY(index));
+					updated(listener, netId);
+					break;
+				}
+				x = DeltaCodec.read(reader, baseline.getX(index), POSITION_BITS);
+				y = DeltaCodec.read(reader, baseline.getY(index), POSITION_BITS);
+				rot = DeltaCodec.read(reader, baseline.getRotation(index), ANGLE_BITS);
+				pending.put(netId, x, y, rot);
+				listener.updated(netId, X_QUANTIZER.dequantize(x), Y_QUANTIZER.dequantize(y), ANGLE_QUANTIZER.dequantize(rot));
+				break;
+			case SNAPSHOT_ENTRY_REMOVED:
+				pending.remove(netId);
+				listener.removed(netId);
+				break;
+			}
+		}
+		
+		receivedPackets.set(packetIndex);
+		if(++receivedPacketCount < packetCount)
+			return false;
+		
+		//every packet was received so the snapshot can be used as a baseline
+		history[sequence & (SNAPSHOT_HISTORY_LENGTH - 1)].set(pending, sequence);
+		lastCompletedSequence = sequence;
+		pending.clear(NO_SNAPSHOT);
+		return true;
+	}
+	
+	/**
+	 * Passes the state an actor has in the pending snapshot to the listener.
+	 */
+	private void updated(Listener listener, int netId) {
+		final int index = pending.indexOf(netId);
+		listener.updated(netId, X_QUANTIZER.dequantize(pending.getX(index)), Y_QUANTIZER.dequantize(pending.getY(index)),
+				ANGLE_QUANTIZER.dequantize(pending.getRotation(index)));
+	}
+	
+	/** @return The sequence number of the newest complete snapshot. */
+	public int getLastCompletedSequence() {
+		return lastCompletedSequence;
+	}
+	
+	/**
+	 * Receives the state of actors decoded from a snapshot.
+	 */
+	public interface Listener {
+		/**
+		 * Called for every actor that is sent in a snapshot. Actors that moved exactly as predicted from their
+		 * velocity aren't sent, so this isn't called for them.
+		 */
+		void updated(int netId, float x, float y, float rotation);
+		
+		/**
+		 * Called for every actor that was removed since the baseline. Snapshots are acknowledged so this
+		 * also catches removals whose own message was lost. The actor may already be gone.
+		 */
+		void removed(int netId);
+	}
+}
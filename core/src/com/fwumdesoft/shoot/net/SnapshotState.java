@@ -0,0 +1,245 @@
+package com.fwumdesoft.shoot.net;
+
+import static com.fwumdesoft.shoot.net.NetConstants.*;
+import com.badlogic.gdx.utils.IntIntMap;
+
+/**
+ * The state of every entity in one snapshot. Used by the server to remember what it sent and by
+ * the client to remember what it received so later snapshots can be delta encoded against it.
+ * <p>Entities are stored in parallel arrays and can be looked up by netId.
+ * <p>Entities that move in a straight line, like bolts, also have a velocity. Their positions are kept with
+ * {@link NetConstants#SUBSTEP_BITS} extra bits of precision so the server and client can both predict where
+ * they will be in a later snapshot with the same integer math. An entity that is exactly where it was
+ * predicted to be doesn't have to be sent at all.
+ */
+public class SnapshotState {
+	/** Half a quantization step in the units of a fixed point position. */
+	private static final int HALF_STEP = 1 << SUBSTEP_BITS - 1;
+	private static final int MAX_POSITION = (1 << POSITION_BITS) - 1;
+	private static final int FIXED_POSITION_MASK = (1 << FIXED_POSITION_BITS) - 1;
+	private static final int MAX_VELOCITY = (1 << VELOCITY_BITS - 1) - 1;
+	
+	private int sequence = NetConstants.NO_SNAPSHOT;
+	private int size;
+	private int[] ids;
+	/** Fixed point positions quantized with {@link NetConstants#X_QUANTIZER} and {@link NetConstants#Y_QUANTIZER}. */
+	private int[] x, y;
+	/** Quantized with {@link NetConstants#ANGLE_QUANTIZER}. */
+	private int[] rotation;
+	/** Fixed point distance moved each tick. 0 for entities that aren't predicted. */
+	private int[] velocityX, velocityY;
+	private final IntIntMap indices;
+	
+	public SnapshotState() {
+		this(64);
+	}
+	
+	/**
+	 * @param capacity Number of entities that can be held before the arrays have to grow.
+	 */
+	public SnapshotState(int capacity) {
+		ids = new int[capacity];
+		x = new int[capacity];
+		y = new int[capacity];
+		rotation = new int[capacity];
+		velocityX = new int[capacity];
+		velocityY = new int[capacity];
+		indices = new IntIntMap(capacity);
+	}
+	
+	/**
+	 * Removes every entity from this SnapshotState.
+	 * @param newSequence Sequence number of the snapshot this will hold.
+	 */
+	public void clear(int newSequence) {
+		sequence = newSequence;
+		size = 0;
+		indices.clear();
+	}
+	
+	/**
+	 * Makes this SnapshotState a copy of another one.
+	 * @param other SnapshotState to copy. If null this will be cleared.
+	 * @param newSequence Sequence number of the snapshot this will hold.
+	 */
+	public void set(SnapshotState other, int newSequence) {
+		clear(newSequence);
+		if(other == null)
+			return;
+		for(int i = 0; i < other.size; i++)
+			putMoving(other.ids[i], other.x[i], other.y[i], other.rotation[i], other.velocityX[i], other.velocityY[i]);
+	}
+	
+	/**
+	 * Adds an entity that isn't predicted or updates it if it already exists.
+	 * @param newX Quantized x position.
+	 * @param newY Quantized y position.
+	 * @param newRot Quantized rotation.
+	 */
+	public void put(int id, int newX, int newY, int newRot) {
+		putMoving(id, newX << SUBSTEP_BITS, newY << SUBSTEP_BITS, newRot, 0, 0);
+	}
+	
+	/**
+	 * Adds an entity that moves in a straight line or updates it if it already exists.
+	 * @param fixedX Quantized x position with {@link NetConstants#SUBSTEP_BITS} extra bits.
+	 * @param fixedY Quantized y position with {@link NetConstants#SUBSTEP_BITS} extra bits.
+	 * @param newRot Quantized rotation.
+	 * @param newVelocityX Distance moved along x each tick in the same units as fixedX. See {@link #toFixedVelocity(float, Quantizer)}.
+	 * @param newVelocityY Distance moved along y each tick in the same units as fixedY.
+	 */
+	public void putMoving(int id, int fixedX, int fixedY, int newRot, int newVelocityX, int newVelocityY) {
+		int index = indices.get(id, -1);
+		if(index < 0) {
+			if(size == ids.length)
+				grow();
+			index = size++;
+			ids[index] = id;
+			indices.put(id, index);
+		}
+		x[index] = fixedX;
+		y[index] = fixedY;
+		rotation[index] = newRot;
+		velocityX[index] = newVelocityX;
+		velocityY[index] = newVelocityY;
+	}
+	
+	/**
+	 * Moves every entity that has a velocity to where it is predicted to be a number of ticks later.
+	 */
+	public void advance(int ticks) {
+		for(int i = 0; i < size; i++) {
+			if(isMoving(i)) {
+				x[i] = predictX(i, ticks);
+				y[i] = predictY(i, ticks);
+			}
+		}
+	}
+	
+	/**
+	 * Removes an entity by swapping the last entity into its place.
+	 * @return true if the entity existed.
+	 */
+	public boolean remove(int id) {
+		int index = indices.remove(id, -1);
+		if(index < 0)
+			return false;
+		int last = --size;
+		if(index != last) {
+			ids[index] = ids[last];
+			x[index] = x[last];
+			y[index] = y[last];
+			rotation[index] = rotation[last];
+			velocityX[index] = velocityX[last];
+			velocityY[index] = velocityY[last];
+			indices.put(ids[index], index);
+		}
+		return true;
+	}
+	
+	/**
+	 * @return The index of the entity or -1 if it isn't in this snapshot.
+	 */
+	public int indexOf(int id) {
+		return indices.get(id, -1);
+	}
+	
+	private void grow() {
+		int capacity = Math.max(8, ids.length * 2);
+		ids = copyOf(ids, capacity);
+		x = copyOf(x, capacity);
+		y = copyOf(y, capacity);
+		rotation = copyOf(rotation, capacity);
+		velocityX = copyOf(velocityX, capacity);
+		velocityY = copyOf(velocityY, capacity);
+	}
+	
+	private int[] copyOf(int[] array, int capacity) {
+		int[] newArray = new int[capacity];
+		System.arraycopy(array, 0, newArray, 0, size);
+		return newArray;
+	}
+	
+	public int getSequence() {
+		return sequence;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public int getId(int index) {
+		return ids[index];
+	}
+	
+	/** @return The quantized x position rounded to the nearest step. */
+	public int getX(int index) {
+		return toQuantized(x[index]);
+	}
+	
+	/** @return The quantized y position rounded to the nearest step. */
+	public int getY(int index) {
+		return toQuantized(y[index]);
+	}
+	
+	public int getRotation(int index) {
+		return rotation[index];
+	}
+	
+	/** @return The quantized x position with {@link NetConstants#SUBSTEP_BITS} extra bits. */
+	public int getFixedX(int index) {
+		return x[index];
+	}
+	
+	/** @return The quantized y position with {@link NetConstants#SUBSTEP_BITS} extra bits. */
+	public int getFixedY(int index) {
+		return y[index];
+	}
+	
+	public int getVelocityX(int index) {
+		return velocityX[index];
+	}
+	
+	public int getVelocityY(int index) {
+		return velocityY[index];
+	}
+	
+	/** @return Whether the entity has a velocity that its position is predicted with. */
+	public boolean isMoving(int index) {
+		return velocityX[index] != 0 || velocityY[index] != 0;
+	}
+	
+	/**
+	 * @return The fixed point x position the entity is predicted to have a number of ticks after this snapshot.
+	 * Wraps around {@link NetConstants#FIXED_POSITION_BITS} bits like {@link DeltaCodec} does.
+	 */
+	public int predictX(int index, int ticks) {
+		return x[index] + velocityX[index] * ticks & FIXED_POSITION_MASK;
+	}
+	
+	/**
+	 * @return The fixed point y position the entity is predicted to have a number of ticks after this snapshot.
+	 * Wraps around {@link NetConstants#FIXED_POSITION_BITS} bits like {@link DeltaCodec} does.
+	 */
+	public int predictY(int index, int ticks) {
+		return y[index] + velocityY[index] * ticks & FIXED_POSITION_MASK;
+	}
+	
+	/**
+	 * @return A fixed point position rounded to the nearest quantization step.
+	 */
+	public static int toQuantized(int fixed) {
+		return Math.min(fixed + HALF_STEP >> SUBSTEP_BITS, MAX_POSITION);
+	}
+	
+	/**
+	 * Converts a velocity to the fixed point units used by {@link #putMoving(int, int, int, int, int, int)}.
+	 * Velocities too large to send are clamped, so the entity will be corrected every snapshot.
+	 * @param distancePerTick Distance moved each tick in world units.
+	 * @param quantizer Quantizer of the position the velocity moves along.
+	 */
+	public static int toFixedVelocity(float distancePerTick, Quantizer quantizer) {
+		long velocity = Math.round(distancePerTick / quantizer.getStep() * (1 << SUBSTEP_BITS));
+		return (int)Math.max(-MAX_VELOCITY, Math.min(MAX_VELOCITY, velocity));
+	}
+}
@@ -0,0 +1,89 @@
+package com.fwumdesoft.shoot.net;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A bounded lock-free queue between one producer thread and one consumer thread.
+ * <p>Every slot holds an element that is created up front and reused, so nothing is allocated once
+ * the queue exists. The producer fills the slot returned by {@link #claim()} and hands it over with
+ * {@link #publish()}. The consumer reads the slot returned by {@link #peek()} and gives it back with
+ * {@link #release()}. Neither thread ever waits on the other. {@link #claim()} returns null instead
+ * of blocking when the queue is full.
+ * @param <T> Type of the elements.
+ */
+public class SpscRingBuffer<T> {
+	private final Object[] slots;
+	private final int mask;
+	/** Next position the producer will publish. Only written by the producer. */
+	private final AtomicLong tail = new AtomicLong();
+	/** Next position the consumer will read. Only written by the consumer. */
+	private final AtomicLong head = new AtomicLong();
+	/** Last head seen by the producer so it doesn't read the consumer's position for every element. */
+	private long cachedHead;
+	
+	/**
+	 * @param capacity Max number of elements in the queue. Must be a power of two.
+	 * @param factory Creates the element in each slot.
+	 */
+	public SpscRingBuffer(int capacity, Supplier<T> factory) {
+		if(capacity <= 0 || (capacity & capacity - 1) != 0)
+			throw new IllegalArgumentException("capacity must be a power of two");
+		slots = new Object[capacity];
+		mask = capacity - 1;
+		for(int i = 0; i < capacity; i++)
+			slots[i] = factory.get();
+	}
+	
+	/**
+	 * Finds the next free slot. Call {@link #publish()} once it has been filled. Only call this from the producer thread!
+	 * @return The element in the slot or null if the queue is full.
+	 */
+	@SuppressWarnings("unchecked")
+	public T claim() {
+		final long position = tail.get();
+		if(position - cachedHead >= slots.length) {
+			cachedHead = head.get();
+			if(position - cachedHead >= slots.length)
+				return null;
+		}
+		return (T)slots[(int)position & mask];
+	}
+	
+	/**
+	 * Hands the slot returned by the last {@link #claim()} to the consumer. Only call this from the producer thread!
+	 */
+	public void publish() {
+		tail.lazySet(tail.get() + 1);
+	}
+	
+	/**
+	 * Finds the oldest published element without removing it. Only call this from the consumer thread!
+	 * @return The element or null if the queue is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	public T peek() {
+		final long position = head.get();
+		if(position == tail.get())
+			return null;
+		return (T)slots[(int)position & mask];
+	}
+	
+	/**
+	 * Gives the slot returned by the last {@link #peek()} back to the producer. Only call this from the consumer thread!
+	 */
+	public void release() {
+		head.lazySet(head.get() + 1);
+	}
+	
+	/**
+	 * @return Number of published elements that haven't been released. Only exact when called from the consumer thread.
+	 */
+	public int size() {
+		return (int)(tail.get() - head.get());
+	}
+	
+	public int capacity() {
+		return slots.length;
+	}
+}
@@ -0,0 +1,178 @@
+package com.fwumdesoft.shoot.net.server;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Polygon;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.fwumdesoft.shoot.model.Bolt;
+
+/**
+ * Holds every bolt the server is simulating in parallel primitive arrays instead of as {@link Bolt} Actors.
+ * Moving every bolt is a single loop over the position and velocity arrays that doesn't allocate.
+ * <p>Bolts are removed by swapping the last bolt into their place so indices are only valid until
+ * the next call to {@link #remove(int)}. Iterate from the last index down to remove while iterating.
+ * Bolts can also be looked up by netId.
+ */
+class BoltStore {
+	private int size;
+	private int[] ids, shooterIds;
+	private float[] x, y, velocityX, velocityY, rotation, speed;
+	private final IntIntMap indices;
+	
+	/** Reused by {@link #getHitbox(int)}. */
+	private final Polygon hitbox;
+	
+	BoltStore() {
+		this(256);
+	}
+	
+	/**
+	 * @param capacity Number of bolts that can be held before the arrays have to grow.
+	 */
+	BoltStore(int capacity) {
+		ids = new int[capacity];
+		shooterIds = new int[capacity];
+		x = new float[capacity];
+		y = new float[capacity];
+		velocityX = new float[capacity];
+		velocityY = new float[capacity];
+		rotation = new float[capacity];
+		speed = new float[capacity];
+		indices = new IntIntMap(capacity);
+		hitbox = new Polygon(new float[] {0f, 0f, Bolt.WIDTH, 0f, Bolt.WIDTH, Bolt.HEIGHT, 0f, Bolt.HEIGHT});
+		hitbox.setOrigin(0f, Bolt.HEIGHT / 2); //same as Bolt's Align.left origin
+	}
+	
+	/**
+	 * Adds a bolt.
+	 * @param rot Rotation in deg. The bolt moves in this direction.
+	 * @return The index of the new bolt or -1 if a bolt with the netId already exists.
+	 */
+	int add(int id, int shooterId, float newX, float newY, float rot, float newSpeed) {
+		if(indices.containsKey(id))
+			return -1;
+		if(size == ids.length)
+			grow();
+		int index = size++;
+		ids[index] = id;
+		shooterIds[index] = shooterId;
+		x[index] = newX;
+		y[index] = newY;
+		rotation[index] = rot;
+		speed[index] = newSpeed;
+		velocityX[index] = newSpeed * MathUtils.cosDeg(rot);
+		velocityY[index] = newSpeed * MathUtils.sinDeg(rot);
+		indices.put(id, index);
+		return index;
+	}
+	
+	/**
+	 * Removes a bolt by swapping the last bolt into its place.
+	 */
+	void remove(int index) {
+		indices.remove(ids[index], -1);
+		int last = --size;
+		if(index != last) {
+			ids[index] = ids[last];
+			shooterIds[index] = shooterIds[last];
+			x[index] = x[last];
+			y[index] = y[last];
+			velocityX[index] = velocityX[last];
+			velocityY[index] = velocityY[last];
+			rotation[index] = rotation[last];
+			speed[index] = speed[last];
+			indices.put(ids[index], index);
+		}
+	}
+	
+	/**
+	 * Moves every bolt along its velocity.
+	 * @param delta Time step in seconds.
+	 */
+	void integrate(float delta) {
+		final int n = size;
+		final float[] x = this.x, y = this.y, vx = velocityX, vy = velocityY;
+		for(int i = 0; i < n; i++) {
+			x[i] += vx[i] * delta;
+			y[i] += vy[i] * delta;
+		}
+	}
+	
+	/**
+	 * @return The index of the bolt or -1 if there is no bolt with the netId.
+	 */
+	int indexOf(int id) {
+		return indices.get(id, -1);
+	}
+	
+	/**
+	 * Moves a shared Polygon to a bolt so it can be used for collision checks.
+	 * @return A Polygon that is reused by every call.
+	 */
+	Polygon getHitbox(int index) {
+		hitbox.setPosition(x[index], y[index]);
+		hitbox.setRotation(rotation[index]);
+		return hitbox;
+	}
+	
+	private void grow() {
+		int capacity = Math.max(8, ids.length * 2);
+		ids = copyOf(ids, capacity);
+		shooterIds = copyOf(shooterIds, capacity);
+		x = copyOf(x, capacity);
+		y = copyOf(y, capacity);
+		velocityX = copyOf(velocityX, capacity);
+		velocityY = copyOf(velocityY, capacity);
+		rotation = copyOf(rotation, capacity);
+		speed = copyOf(speed, capacity);
+	}
+	
+	private int[] copyOf(int[] array, int capacity) {
+		int[] newArray = new int[capacity];
+		System.arraycopy(array, 0, newArray, 0, size);
+		return newArray;
+	}
+	
+	private float[] copyOf(float[] array, int capacity) {
+		float[] newArray = new float[capacity];
+		System.arraycopy(array, 0, newArray, 0, size);
+		return newArray;
+	}
+	
+	int size() {
+		return size;
+	}
+	
+	int getId(int index) {
+		return ids[index];
+	}
+	
+	int getShooterId(int index) {
+		return shooterIds[index];
+	}
+	
+	float getX(int index) {
+		return x[index];
+	}
+	
+	float getY(int index) {
+		return y[index];
+	}
+	
+	float getRotation(int index) {
+		return rotation[index];
+	}
+	
+	float getSpeed(int index) {
+		return speed[index];
+	}
+	
+	/** @return Distance moved along x each second. */
+	float getVelocityX(int index) {
+		return velocityX[index];
+	}
+	
+	/** @return Distance moved along y each second. */
+	float getVelocityY(int index) {
+		return velocityY[index];
+	}
+}
@@ -0,0 +1,44 @@
+package com.fwumdesoft.shoot.net.server;
+
+import static com.fwumdesoft.shoot.net.NetConstants.PACKET_LENGTH;
+import java.nio.ByteBuffer;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Pool;
+
+/**
+ * A thread safe pool of direct ByteBuffers that can each hold one packet.
+ * <p>Direct buffers can be handed to a DatagramChannel without being copied, but they are
+ * expensive to allocate so they should always be obtained from here and freed when done.
+ * Buffers are cleared when they are freed.
+ * <p>Only used for outgoing datagrams. Ingress workers each receive into a buffer of their own.
+ */
+class BufferPool extends Pool<ByteBuffer> {
+	BufferPool() {
+		super(16, 4096);
+	}
+	
+	@Override
+	protected ByteBuffer newObject() {
+		return ByteBuffer.allocateDirect(PACKET_LENGTH);
+	}
+	
+	@Override
+	public synchronized ByteBuffer obtain() {
+		return super.obtain();
+	}
+	
+	@Override
+	public synchronized void free(ByteBuffer buffer) {
+		super.free(buffer);
+	}
+	
+	@Override
+	public synchronized void freeAll(Array<ByteBuffer> buffers) {
+		super.freeAll(buffers);
+	}
+	
+	@Override
+	protected void reset(ByteBuffer buffer) {
+		buffer.clear();
+	}
+}
@@ -1,38 +1,178 @@
 package com.fwumdesoft.shoot.net.server;
 
-import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
 import java.util.UUID;
+import com.fwumdesoft.shoot.net.NetConstants;
 
 /**
- * Represents a Client that the server can communicate with. Only the server may instantiate/use Clients.
+ * Represents a Client that the server can communicate with. Only the server may instantiate/use Clients,
+ * and only from within the render loop.
  */
 class Client {
-	final UUID clientId;
+	/** Max number of datagrams that can be waiting to be sent to a client. */
+	static final int MAX_QUEUED_DATAGRAMS = 64;
+	
+	/** Session id the server assigned to this client. Also the netId of the client's Player. */
+	final int clientId;
+	/** Id the client identified itself with when it connected. */
+	final UUID clientUuid;
 	final SocketAddress address;
-	long timeSinceLastHeartbeat;
+	/** {@link System#currentTimeMillis()} when the last message was received from this client. */
+	long lastHeartbeatTime;
+	/** Sequence number of the newest snapshot this client acknowledged. Snapshots are delta encoded against it. */
+	private int ackedSequence;
+	/** State of this client's Player. */
+	final PlayerState player;
+	private final OutboundQueue outbound;
+	private long droppedSnapshots;
+	
+	/** Sequence number and time in milliseconds of each snapshot sent to this client, indexed like the snapshot history. */
+	private final int[] sentSequences = new int[NetConstants.SNAPSHOT_HISTORY_LENGTH];
+	private final long[] sentTimes = new long[NetConstants.SNAPSHOT_HISTORY_LENGTH];
+	private long sentSnapshots, ackedSnapshots;
+	/** Sequence number of the newest snapshot sent to this client. */
+	private int lastSentSequence;
+	/** Smoothed round trip time in milliseconds or a negative number if it hasn't been measured. */
+	private float roundTripTime = -1f;
 	
-	Client(final UUID id, final SocketAddress address) {
+	Client(final int id, final UUID uuid, final SocketAddress address, final BufferPool bufferPool, final ServerMetrics metrics) {
 		clientId = id;
+		clientUuid = uuid;
 		this.address = address;
-		timeSinceLastHeartbeat = 0L;
+		lastHeartbeatTime = System.currentTimeMillis();
+		ackedSequence = NetConstants.NO_SNAPSHOT;
+		lastSentSequence = NetConstants.NO_SNAPSHOT;
+		player = new PlayerState(id);
+		outbound = new OutboundQueue(bufferPool, MAX_QUEUED_DATAGRAMS, metrics);
+		Arrays.fill(sentSequences, NetConstants.NO_SNAPSHOT);
 	}
 	
 	/**
-	 * Sends a message to this client from the server.
-	 * @param socket socket used to send the message
-	 * @param msg
+	 * Records that this client received every packet of a snapshot. Acknowledgements that
+	 * are older than the newest one are ignored since they arrived out of order. So are acknowledgements of
+	 * snapshots that weren't sent to this client, are too old to tell or haven't been sent yet, so a
+	 * forged or corrupt acknowledgement can't make the server delta encode against a snapshot the client doesn't have.
+	 * <p>The time since the snapshot was sent is used to estimate this client's round trip time. It includes up
+	 * to a tick of waiting for the acknowledgement to be applied.
+	 * @param sequence Sequence number of the snapshot.
+	 * @param time Time in milliseconds the acknowledgement was applied at.
 	 */
-	void send(final DatagramSocket socket, final DatagramPacket packet) {
-		synchronized(packet) {
-			packet.setSocketAddress(address);
-			try {
-				socket.send(packet);
-			} catch(IOException e) {
-				Server.logFile.writeString("Failed to send a packet to ID: " + clientId + "\n", true);
+	void acknowledge(int sequence, long time) {
+		int index = sequence & (NetConstants.SNAPSHOT_HISTORY_LENGTH - 1);
+		if(sequence == NetConstants.NO_SNAPSHOT || sequence - lastSentSequence > 0 || sentSequences[index] != sequence)
+			return;
+		if(ackedSequence != NetConstants.NO_SNAPSHOT && sequence - ackedSequence <= 0)
+			return;
+		ackedSequence = sequence;
+		ackedSnapshots++;
+		float sample = time - sentTimes[index];
+		//smooth the samples the same way TCP does
+		roundTripTime = roundTripTime < 0f ? sample : roundTripTime + (sample - roundTripTime) / 8f;
+	}
+	
+	int getAckedSequence() {
+		return ackedSequence;
+	}
+	
+	/**
+	 * Queues a message to be sent to this client at the end of the tick. Messages queued in the same tick
+	 * are packed into as few datagrams as possible. Only use this for state that is sent again later,
+	 * since it is dropped if this client's queue is full.
+	 * @param message Buffer holding a whole message from index 0 to its limit. It can be queued for any number of clients.
+	 * @return false if this client's queue is full and the message was dropped.
+	 */
+	boolean queue(final ByteBuffer message) {
+		return outbound.queue(message);
+	}
+	
+	/**
+	 * Queues an event that is only sent once, like a player joining or a bolt being removed. It is queued
+	 * even if this client's queue is full.
+	 * @param message Buffer holding a whole message from index 0 to its limit. It can be queued for any number of clients.
+	 */
+	void queueEvent(final ByteBuffer message) {
+		outbound.queueEvent(message);
+	}
+	
+	/**
+	 * Makes the next queued message start a new datagram.
+	 */
+	void endDatagram() {
+		outbound.endDatagram();
+	}
+	
+	/**
+	 * Queues every packet of a snapshot unless this client couldn't be sent everything during the last flush
+	 * or the queue doesn't have room for all of them. A client that is falling behind doesn't need stale state.
+	 * It will get a snapshot delta encoded against its last acknowledged one once it catches up.
+	 * <p>The snapshot is only recorded as sent once every packet of it is queued, so a snapshot that was cut
+	 * short can't be acknowledged or used as a baseline.
+	 * @param time Time in milliseconds the snapshot is sent at.
+	 * @return false if the snapshot was dropped.
+	 */
+	boolean queueSnapshot(final SnapshotBuilder snapshot, final long time) {
+		if(outbound.getBacklog() > 0 || !outbound.hasRoomFor(snapshot.getPacketCount())) {
+			droppedSnapshots++;
+			return false;
+		}
+		for(int i = 0; i < snapshot.getPacketCount(); i++) {
+			if(!outbound.queue(snapshot.getPacket(i))) {
+				droppedSnapshots++;
+				return false;
 			}
 		}
+		int index = snapshot.getSequence() & (NetConstants.SNAPSHOT_HISTORY_LENGTH - 1);
+		sentSequences[index] = snapshot.getSequence();
+		sentTimes[index] = time;
+		lastSentSequence = snapshot.getSequence();
+		sentSnapshots++;
+		return true;
+	}
+	
+	/**
+	 * Sends the queued datagrams. Datagrams that don't fit in the channel's send buffer stay queued.
+	 * @param channel Non-blocking channel used to send the datagrams.
+	 * @return Number of datagrams still queued.
+	 */
+	int flush(final DatagramChannel channel) {
+		return outbound.flush(channel, address);
+	}
+	
+	/**
+	 * Frees every queued datagram. Call this once this client is removed.
+	 */
+	void close() {
+		outbound.clear();
+	}
+	
+	/** @return Number of datagrams waiting to be sent. */
+	int getQueueDepth() {
+		return outbound.getDepth();
+	}
+	
+	/** @return Number of messages dropped because this client's queue was full. */
+	long getDroppedMessages() {
+		return outbound.getDroppedMessages();
+	}
+	
+	/** @return Number of snapshots skipped because this client was falling behind. */
+	long getDroppedSnapshots() {
+		return droppedSnapshots;
+	}
+	
+	/** @return Smoothed round trip time in milliseconds or a negative number if it hasn't been measured yet. */
+	float getRoundTripTime() {
+		return roundTripTime;
+	}
+	
+	/**
+	 * @return Fraction of the snapshots sent to this client that were never acknowledged. Lost
+	 * acknowledgements and snapshots still in flight count as lost so this is an upper bound.
+	 */
+	float getSnapshotLoss() {
+		return sentSnapshots == 0 ? 0f : 1f - (float)ackedSnapshots / sentSnapshots;
 	}
 }
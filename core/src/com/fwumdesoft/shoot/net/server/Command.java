@@ -0,0 +1,70 @@
+package com.fwumdesoft.shoot.net.server;
+
+import static com.fwumdesoft.shoot.net.NetConstants.*;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * A message from a client that an {@link IngressWorker} decoded so the simulation can apply it at the
+ * start of the next tick. Only the fields used by the message's id are set.
+ * <p>Every slot of the server's command queue holds a Command that is reused, so decoding doesn't allocate.
+ */
+class Command {
+	/** false if the message couldn't be decoded. The simulation skips Commands that aren't valid. */
+	boolean valid;
+	byte msgId;
+	int senderId;
+	SocketAddress senderAddress;
+	
+	/** UUID of a connecting client. Used by {@code NetConstants.MSG_CONNECT}. */
+	long uuidMostBits, uuidLeastBits;
+	/** Quantized position and rotation. Used by {@code NetConstants.MSG_UPDATE_PLAYER} and {@code NetConstants.MSG_SPAWN_BOLT}. */
+	int x, y, rotation;
+	/** Used by {@code NetConstants.MSG_SPAWN_BOLT}. */
+	int boltId;
+	float speed;
+	/** Sequence number of an acknowledged snapshot. Used by {@code NetConstants.MSG_SNAPSHOT_ACK}. */
+	int sequence;
+	
+	/**
+	 * Decodes a message into this Command.
+	 * @param message Buffer holding the whole message from index 0 to its limit.
+	 * @param address Address the message was sent from.
+	 * @return false if the message id isn't one clients send to the server.
+	 * @throws java.nio.BufferUnderflowException If the message is too short.
+	 */
+	boolean decode(ByteBuffer message, SocketAddress address) {
+		message.getInt(); //data length
+		msgId = message.get();
+		senderId = message.getShort() & 0xFFFF;
+		senderAddress = address;
+		
+		switch(msgId)
+		{
+		case MSG_CONNECT:
+			uuidMostBits = message.getLong();
+			uuidLeastBits = message.getLong();
+			return true;
+		case MSG_DISCONNECT:
+		case MSG_HEARTBEAT:
+			return true;
+		case MSG_UPDATE_PLAYER:
+			x = message.getShort() & 0xFFFF;
+			y = message.getShort() & 0xFFFF;
+			rotation = message.getShort() & 0xFFFF;
+			return true;
+		case MSG_SPAWN_BOLT:
+			boltId = message.getInt();
+			x = message.getShort() & 0xFFFF;
+			y = message.getShort() & 0xFFFF;
+			rotation = message.getShort() & 0xFFFF;
+			speed = message.getFloat();
+			return true;
+		case MSG_SNAPSHOT_ACK:
+			sequence = message.getInt();
+			return true;
+		default:
+			return false;
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package com.fwumdesoft.shoot.net.server;
+
+import static com.fwumdesoft.shoot.net.NetConstants.PACKET_LENGTH;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+/**
+ * A thread that receives packets from the server's channel and hands each one to a {@link Handler}.
+ * <p>Several workers can share one channel. Each one registers the channel with its own Selector and
+ * every worker that wakes up drains as many packets as it can. This doesn't scale: every packet wakes
+ * every worker and the channel only lets one of them receive at a time, so extra workers only overlap
+ * decoding with receiving and otherwise add wakeups and contention on the command queue. One worker
+ * is the default.
+ */
+class IngressWorker extends Thread {
+	private final DatagramChannel channel;
+	private final Selector selector;
+	private final Handler handler;
+	/** Every packet is received into this buffer, so workers never wait on each other for one. */
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(PACKET_LENGTH);
+	
+	/**
+	 * @param index Index of this worker. Used to name the thread.
+	 * @param channel Non-blocking channel to receive from.
+	 * @param handler Handles every packet this worker receives.
+	 * @throws IOException If a Selector couldn't be opened for the channel.
+	 */
+	IngressWorker(int index, DatagramChannel channel, Handler handler) throws IOException {
+		super("ingress_worker_" + index);
+		this.channel = channel;
+		this.handler = handler;
+		selector = Selector.open();
+		channel.register(selector, SelectionKey.OP_READ);
+	}
+	
+	@Override
+	public void run() {
+		while(!Thread.interrupted()) {
+			try {
+				selector.select();
+				selector.selectedKeys().clear();
+			} catch(IOException e) {
+				Server.log.error("Failed to wait for packets on " + getName());
+				continue;
+			}
+			
+			//drain every packet that arrived since the last wakeup. Other workers may get some of them first
+			while(true) {
+				buffer.clear();
+				SocketAddress senderAddress;
+				try {
+					senderAddress = channel.receive(buffer);
+				} catch(IOException e) {
+					Server.log.error("Failed to receive a packet on " + getName());
+					break;
+				}
+				if(senderAddress == null) //nothing left to receive
+					break;
+				
+				buffer.flip();
+				handler.handle(buffer, senderAddress);
+			}
+		}
+	}
+	
+	/**
+	 * Stops this worker and waits for it to finish.
+	 */
+	void close() {
+		interrupt(); //also wakes it up if it's waiting on the selector
+		try {
+			join();
+		} catch(InterruptedException e) {}
+		try {
+			selector.close();
+		} catch(IOException e) {
+			Server.log.error("Failed to close the Selector of " + getName());
+		}
+	}
+	
+	/**
+	 * Handles packets received by an IngressWorker. Called by every worker at the same time so it must be thread safe.
+	 */
+	interface Handler {
+		/**
+		 * Must not throw for a message that is too short or malformed. Anyone can send one.
+		 * @param message Buffer holding the whole message from index 0 to its limit. Only valid until this returns.
+		 * @param senderAddress Address the message was sent from.
+		 */
+		void handle(ByteBuffer message, SocketAddress senderAddress);
+	}
+}
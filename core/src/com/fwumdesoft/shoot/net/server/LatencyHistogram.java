@@ -0,0 +1,85 @@
+package com.fwumdesoft.shoot.net.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts positive long values, such as durations in nanoseconds, in buckets that grow with the value so
+ * that percentiles can be read with a fixed relative error no matter how big the values get.
+ * <p>Values below {@value #LINEAR_BUCKETS} get a bucket each. Every power of two above that is split into
+ * {@value #SUB_BUCKETS} buckets, so a value read back from the histogram is never off by more than about 3%.
+ * Recording doesn't allocate or lock. One thread should record values but any thread can read them while
+ * they are being recorded, in which case the result might miss the newest values.
+ */
+class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int LINEAR_BUCKETS = SUB_BUCKETS * 2;
+	/** Enough buckets to hold {@link Long#MAX_VALUE}. */
+	private static final int BUCKET_COUNT = LINEAR_BUCKETS + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+	
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final AtomicLong totalCount = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+	
+	/**
+	 * Counts a value. Negative values are counted as 0.
+	 */
+	void record(long value) {
+		if(value < 0)
+			value = 0;
+		counts.incrementAndGet(bucketOf(value));
+		totalCount.incrementAndGet();
+		sum.addAndGet(value);
+		if(value > max.get())
+			max.set(value); //only one thread records so there is no race to lose
+	}
+	
+	/**
+	 * @param percentile Between 0 and 100.
+	 * @return The highest value that is in the same bucket as the value at the percentile or 0 if nothing was recorded.
+	 */
+	long getValueAtPercentile(double percentile) {
+		long total = totalCount.get();
+		if(total == 0)
+			return 0;
+		long target = Math.max(1, (long)Math.ceil(percentile / 100.0 * total));
+		long seen = 0;
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts.get(i);
+			if(seen >= target)
+				return Math.min(highestValueIn(i), max.get());
+		}
+		return max.get();
+	}
+	
+	long getTotalCount() {
+		return totalCount.get();
+	}
+	
+	long getMax() {
+		return max.get();
+	}
+	
+	double getMean() {
+		long total = totalCount.get();
+		return total == 0 ? 0 : (double)sum.get() / total;
+	}
+	
+	private static int bucketOf(long value) {
+		if(value < LINEAR_BUCKETS)
+			return (int)value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		//value >> shift is between SUB_BUCKETS and 2 * SUB_BUCKETS - 1
+		return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (int)(value >> shift) - SUB_BUCKETS;
+	}
+	
+	private static long highestValueIn(int bucket) {
+		if(bucket < LINEAR_BUCKETS)
+			return bucket;
+		int shift = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+		long subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,137 @@
+package com.fwumdesoft.shoot.net.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * A bounded lock-free queue that any number of threads can offer to and one thread can poll from.
+ * <p>Every slot has a sequence number that tells producers when the slot is free and tells the
+ * consumer when the element in it has been published. Producers claim a slot with a CAS on the tail
+ * and never wait on each other or on the consumer. {@link #offer(Object)} fails instead of
+ * blocking when the queue is full.
+ * <p>A queue created with a factory keeps an element in every slot and reuses it, so nothing is
+ * allocated once the queue exists. Producers fill the slot returned by {@link #claim()} and the
+ * consumer reads it with {@link #peek()} and {@link #release()}. Don't mix that with
+ * {@link #offer(Object)} and {@link #poll()} on the same queue.
+ * @param <T> Type of the elements.
+ */
+class MpscRingBuffer<T> {
+	private final Object[] elements;
+	private final AtomicLongArray sequences;
+	private final int mask;
+	/** Next position a producer will claim. */
+	private final AtomicLong tail = new AtomicLong();
+	/** Next position the consumer will poll. Only used by the consumer. */
+	private long head;
+	
+	/**
+	 * @param capacity Max number of elements in the queue. Must be a power of two.
+	 */
+	MpscRingBuffer(int capacity) {
+		if(capacity <= 0 || (capacity & capacity - 1) != 0)
+			throw new IllegalArgumentException("capacity must be a power of two");
+		elements = new Object[capacity];
+		sequences = new AtomicLongArray(capacity);
+		mask = capacity - 1;
+		for(int i = 0; i < capacity; i++)
+			sequences.set(i, i);
+	}
+	
+	/**
+	 * @param capacity Max number of elements in the queue. Must be a power of two.
+	 * @param factory Creates the element in each slot.
+	 */
+	MpscRingBuffer(int capacity, Supplier<T> factory) {
+		this(capacity);
+		for(int i = 0; i < capacity; i++)
+			elements[i] = factory.get();
+	}
+	
+	/**
+	 * Adds an element to the queue. Safe to call from any thread.
+	 * @return false if the queue is full and the element wasn't added.
+	 */
+	boolean offer(T element) {
+		final long position = claim();
+		if(position < 0)
+			return false;
+		elements[(int)position & mask] = element;
+		publish(position);
+		return true;
+	}
+	
+	/**
+	 * Claims the next free slot. It must be handed to the consumer with {@link #publish(long)} even if
+	 * the producer has nothing to put in it, otherwise the consumer can't get past it. Safe to call from any thread.
+	 * @return Position of the slot or -1 if the queue is full.
+	 */
+	long claim() {
+		long position = tail.get();
+		while(true) {
+			long difference = sequences.get((int)position & mask) - position;
+			if(difference == 0) { //the slot is free
+				if(tail.compareAndSet(position, position + 1))
+					return position;
+				position = tail.get();
+			} else if(difference < 0) { //the consumer hasn't freed the slot yet
+				return -1;
+			} else { //another producer claimed the slot first
+				position = tail.get();
+			}
+		}
+	}
+	
+	/**
+	 * @param position Position returned by {@link #claim()}.
+	 * @return The element in the claimed slot. Only the producer that claimed it may use it until it is published.
+	 */
+	@SuppressWarnings("unchecked")
+	T get(long position) {
+		return (T)elements[(int)position & mask];
+	}
+	
+	/**
+	 * Hands a claimed slot to the consumer.
+	 * @param position Position returned by {@link #claim()}.
+	 */
+	void publish(long position) {
+		sequences.lazySet((int)position & mask, position + 1);
+	}
+	
+	/**
+	 * Removes the oldest published element. Only call this from the consumer thread!
+	 * @return The element or null if the queue is empty.
+	 */
+	T poll() {
+		T element = peek();
+		if(element != null) {
+			elements[(int)head & mask] = null;
+			release();
+		}
+		return element;
+	}
+	
+	/**
+	 * Finds the oldest published element without removing it. Only call this from the consumer thread!
+	 * @return The element or null if the queue is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	T peek() {
+		if(sequences.get((int)head & mask) != head + 1)
+			return null;
+		return (T)elements[(int)head & mask];
+	}
+	
+	/**
+	 * Frees the slot returned by the last {@link #peek()} for the producers. Only call this from the consumer thread!
+	 */
+	void release() {
+		sequences.lazySet((int)head & mask, head + elements.length); //free the slot for the next lap
+		head++;
+	}
+	
+	int capacity() {
+		return elements.length;
+	}
+}
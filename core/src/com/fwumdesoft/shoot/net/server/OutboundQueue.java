@@ -0,0 +1,154 @@
+package com.fwumdesoft.shoot.net.server;
+
+import static com.fwumdesoft.shoot.net.NetConstants.MSG_ID_OFFSET;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Queues the messages the server sends to one client during a tick and packs as many of them as fit into
+ * each datagram. The client reads every message in a datagram one after another using the data length
+ * in each message's header.
+ * <p>The queue is bounded. Messages that would need a datagram past the limit are dropped and counted,
+ * which is only safe for state that a later snapshot sends again. Events that are only sent once, like a
+ * player joining or a bolt being removed, are queued with {@link #queueEvent(ByteBuffer)} which ignores the
+ * limit. They stay in order with everything else.
+ * Datagrams the channel won't take because its send buffer is full stay queued until the next flush.
+ * Only use an OutboundQueue from within the render loop!
+ */
+class OutboundQueue {
+	private final BufferPool bufferPool;
+	private final ServerMetrics metrics;
+	private final int maxDatagrams;
+	/** Datagrams waiting to be sent, oldest first. Each one is filled up to its position. */
+	private final Array<ByteBuffer> datagrams = new Array<>();
+	/** Whether more messages can be added to the last datagram. */
+	private boolean lastOpen;
+	/** Number of datagrams that were still queued after the last flush. */
+	private int backlog;
+	private long droppedMessages, sentDatagrams;
+	
+	/**
+	 * @param bufferPool Pool that datagrams are obtained from and freed to.
+	 * @param maxDatagrams Max number of datagrams that can be queued at once.
+	 * @param metrics Counts every message that is queued.
+	 */
+	OutboundQueue(BufferPool bufferPool, int maxDatagrams, ServerMetrics metrics) {
+		this.bufferPool = bufferPool;
+		this.metrics = metrics;
+		this.maxDatagrams = maxDatagrams;
+	}
+	
+	/**
+	 * Copies a message onto the end of the queue unless the queue is full.
+	 * @param message Buffer holding a whole message from index 0 to its limit.
+	 * @return false if the queue is full and the message was dropped.
+	 */
+	boolean queue(ByteBuffer message) {
+		return queue(message, false);
+	}
+	
+	/**
+	 * Copies a message onto the end of the queue even if the queue is full. Only use this for messages that
+	 * are never sent again, so the queue can only grow past its limit by a few small messages.
+	 * @param message Buffer holding a whole message from index 0 to its limit.
+	 */
+	void queueEvent(ByteBuffer message) {
+		queue(message, true);
+	}
+	
+	private boolean queue(ByteBuffer message, boolean ignoreLimit) {
+		ByteBuffer datagram = lastOpen ? datagrams.peek() : null;
+		if(datagram == null || datagram.remaining() < message.limit()) {
+			if(!ignoreLimit && datagrams.size >= maxDatagrams) {
+				droppedMessages++;
+				return false;
+			}
+			datagram = bufferPool.obtain();
+			datagrams.add(datagram);
+			lastOpen = true;
+		}
+		message.position(0);
+		datagram.put(message);
+		metrics.countSent(message.get(MSG_ID_OFFSET), message.limit());
+		return true;
+	}
+	
+	/**
+	 * @param messageCount Number of messages that each fill most of a datagram.
+	 * @return Whether that many messages can be queued without any of them being dropped.
+	 */
+	boolean hasRoomFor(int messageCount) {
+		return datagrams.size + messageCount <= maxDatagrams;
+	}
+	
+	/**
+	 * Makes the next message start a new datagram. Used when the client reads a message on its own.
+	 */
+	void endDatagram() {
+		lastOpen = false;
+	}
+	
+	/**
+	 * Sends queued datagrams until they are all sent or the channel's send buffer is full.
+	 * @param channel Non-blocking channel to send with.
+	 * @param address Address of the client.
+	 * @return Number of datagrams still queued.
+	 */
+	int flush(DatagramChannel channel, SocketAddress address) {
+		lastOpen = false;
+		int sent = 0;
+		while(sent < datagrams.size) {
+			ByteBuffer datagram = datagrams.get(sent);
+			datagram.flip();
+			try {
+				if(channel.send(datagram, address) == 0) {
+					//the send buffer is full so keep the rest for the next flush
+					datagram.position(datagram.limit());
+					datagram.limit(datagram.capacity());
+					break;
+				}
+				sentDatagrams++;
+			} catch(IOException e) {
+				Server.log.error("Failed to send a packet to " + address);
+			}
+			bufferPool.free(datagram);
+			sent++;
+		}
+		if(sent > 0)
+			datagrams.removeRange(0, sent - 1);
+		backlog = datagrams.size;
+		return backlog;
+	}
+	
+	/**
+	 * Frees every queued datagram without sending it.
+	 */
+	void clear() {
+		bufferPool.freeAll(datagrams);
+		datagrams.clear();
+		lastOpen = false;
+		backlog = 0;
+	}
+	
+	/** @return Number of datagrams that are queued. */
+	int getDepth() {
+		return datagrams.size;
+	}
+	
+	/** @return Number of datagrams that couldn't be sent during the last flush. */
+	int getBacklog() {
+		return backlog;
+	}
+	
+	/** @return Number of messages dropped because the queue was full. */
+	long getDroppedMessages() {
+		return droppedMessages;
+	}
+	
+	long getSentDatagrams() {
+		return sentDatagrams;
+	}
+}
@@ -0,0 +1,68 @@
+package com.fwumdesoft.shoot.net.server;
+
+import static com.fwumdesoft.shoot.net.NetConstants.*;
+import com.badlogic.gdx.math.Polygon;
+import com.fwumdesoft.shoot.model.Player;
+
+/**
+ * The server's record of a client's Player. The client has authority over its player's position so this
+ * only holds the last position and rotation the client sent.
+ * <p>Only use a PlayerState from within the render loop!
+ */
+class PlayerState {
+	/** netId of the player. Same as the session id of the client that owns it. */
+	final int playerId;
+	
+	private int x, y, rotation;
+	/** Whether the client sent its first update yet. Until then the player has no position to collide or send. */
+	private boolean hasState;
+	private final Polygon hitbox;
+	
+	PlayerState(int playerId) {
+		this.playerId = playerId;
+		hitbox = new Polygon(new float[] {0f, 0f, Player.WIDTH, 0f, Player.WIDTH, Player.HEIGHT, 0f, Player.HEIGHT});
+		hitbox.setOrigin(Player.WIDTH / 2, Player.HEIGHT / 2); //same as Player's Align.center origin
+	}
+	
+	/**
+	 * Records the state a client sent in a {@code NetConstants.MSG_UPDATE_PLAYER} and moves the hitbox to it.
+	 * @param newX Quantized x position.
+	 * @param newY Quantized y position.
+	 * @param newRotation Quantized rotation.
+	 */
+	void update(int newX, int newY, int newRotation) {
+		x = newX;
+		y = newY;
+		rotation = newRotation;
+		hitbox.setPosition(X_QUANTIZER.dequantize(x), Y_QUANTIZER.dequantize(y));
+		hitbox.setRotation(ANGLE_QUANTIZER.dequantize(rotation));
+		hasState = true;
+	}
+	
+	/**
+	 * @return Whether the client sent a {@code NetConstants.MSG_UPDATE_PLAYER} yet. The position, rotation and hitbox
+	 * are meaningless until it has.
+	 */
+	boolean hasState() {
+		return hasState;
+	}
+	
+	/** @return Quantized x position. */
+	int getX() {
+		return x;
+	}
+	
+	/** @return Quantized y position. */
+	int getY() {
+		return y;
+	}
+	
+	/** @return Quantized rotation. */
+	int getRotation() {
+		return rotation;
+	}
+	
+	Polygon getHitbox() {
+		return hitbox;
+	}
+}
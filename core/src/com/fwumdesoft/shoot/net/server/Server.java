@@ -1,382 +1,608 @@
 package com.fwumdesoft.shoot.net.server;
 
 import static com.fwumdesoft.shoot.net.NetConstants.*;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
-import java.net.SocketException;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map.Entry;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.UnresolvedAddressException;
 import java.util.UUID;
 import com.badlogic.gdx.ApplicationAdapter;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
-import com.badlogic.gdx.scenes.scene2d.Actor;
-import com.badlogic.gdx.scenes.scene2d.actions.Actions;
+import com.badlogic.gdx.math.Intersector;
+import com.badlogic.gdx.math.Polygon;
 import com.badlogic.gdx.utils.Array;
-import com.badlogic.gdx.utils.Pools;
-import com.fwumdesoft.shoot.model.Bolt;
-import com.fwumdesoft.shoot.model.NetActor;
-import com.fwumdesoft.shoot.model.Player;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntMap;
+import com.fwumdesoft.shoot.net.SnapshotState;
 
+/**
+ * The game server. {@link IngressWorker}s decode packets into {@link Command}s and queue them, and the
+ * render loop applies every queued Command at the start of each tick. Clients, players and bolts are
+ * only ever touched by the render loop so none of them need locks.
+ */
 public class Server extends ApplicationAdapter {
-	public static FileHandle logFile;
+	/** Width and height of the cells used to find which players a bolt could be touching. Bigger than a player. */
+	private static final float PLAYER_GRID_CELL_SIZE = 64f;
+	/** Default number of threads that receive and decode packets. More don't scale since they share one channel. See {@link IngressWorker}. */
+	public static final int DEFAULT_INGRESS_WORKERS = 1;
+	/** Max number of Commands that can be waiting for the next tick. Commands past this are dropped. */
+	private static final int COMMAND_QUEUE_CAPACITY = 4096;
+	/** Length in milliseconds of each slot in the heartbeat timeout wheel. */
+	private static final long TIMEOUT_SLOT_LENGTH = 250L;
+	/** Number of slots in the heartbeat timeout wheel. Covers a little more than {@code NetConstants.HEARTBEAT_TIMEOUT}. */
+	private static final int TIMEOUT_SLOT_COUNT = (int)(HEARTBEAT_TIMEOUT / TIMEOUT_SLOT_LENGTH) + 4;
+	/** Time in milliseconds between each update of the metrics that belong to the render loop. */
+	private static final long METRICS_PUBLISH_INTERVAL = 1000L;
+	/** Time in milliseconds between each time the metrics are written to the log. */
+	private static final long METRICS_DUMP_INTERVAL = 60000L;
 	
-	private Thread heartbeatThread, ioThread;
-	private DatagramSocket socket;
+	/** The server's log. Safe to use from any thread once the server is created. */
+	public static ServerLog log;
 	
-	private HashMap<UUID, Client> clients;
-	private HeadlessStage stage;
+	private final ServerConfig config;
+	private IngressWorker[] ingressWorkers;
+	private DatagramChannel channel;
+	private final BufferPool bufferPool = new BufferPool();
+	/** Commands decoded by the ingress workers that haven't been applied yet. The ingress workers decode into its slots. */
+	private final MpscRingBuffer<Command> commands = new MpscRingBuffer<>(COMMAND_QUEUE_CAPACITY, Command::new);
+	private final ServerMetrics metrics = new ServerMetrics();
 	
-	/** Only reference this packet from within the render loop! */
-	private DatagramPacket renderPacket = new DatagramPacket(new byte[PACKET_LENGTH], PACKET_LENGTH);
-	/** Only reference this buffer from within the render loop! */
-	private ByteBuffer renderBuffer = ByteBuffer.wrap(renderPacket.getData());
+	//everything below is only referenced from within the render loop
+	/** Clients keyed by their session id. */
+	private final IntMap<Client> clients = new IntMap<>();
+	/** Last session id that was assigned to a client. */
+	private int lastSessionId = NULL_ID;
+	private final BoltStore bolts = new BoltStore();
+	private final TickScheduler tickScheduler;
+	private final ByteBuffer renderBuffer = ByteBuffer.allocateDirect(PACKET_LENGTH);
+	private final SnapshotHistory snapshots = new SnapshotHistory();
+	private final SpatialGrid playerGrid = new SpatialGrid(-WORLD_MARGIN, -WORLD_MARGIN, WORLD_WIDTH + 2 * WORLD_MARGIN,
+			WORLD_HEIGHT + 2 * WORLD_MARGIN, PLAYER_GRID_CELL_SIZE);
+	private final Array<PlayerState> players = new Array<>();
+	private final IntArray hitCandidates = new IntArray();
+	/** Finds clients whose heartbeat timed out. Created when the server starts. */
+	private TimeoutWheel<Client> heartbeatTimeouts;
+	private final Array<Client> dueClients = new Array<>(false, 16);
+	/** Time the current tick started at in milliseconds. */
+	private long tickTime;
+	private long nextMetricsPublish, nextMetricsDump;
+	/** Ingress drop counts that were already written to the log. */
+	private long loggedDecodeErrors, loggedDroppedCommands;
+	private int snapshotSequence;
+	/** Drop counts of clients that were already removed. */
+	private long droppedMessageCount, droppedSnapshotCount;
+	
+	//outbound queue statistics updated at the end of every tick and read from any thread
+	private volatile int outboundQueueDepth;
+	private volatile long totalDroppedMessages, totalDroppedSnapshots;
+	
+	public Server() {
+		this(new ServerConfig());
+	}
+	
+	/**
+	 * @param config Where the server listens and how it's tuned. Read when the server starts and must
+	 * not be changed afterwards.
+	 * @throws IllegalArgumentException If a setting isn't valid.
+	 */
+	public Server(ServerConfig config) {
+		config.validate();
+		this.config = config;
+		tickScheduler = new TickScheduler(config.tickRate, this::tick);
+	}
 	
 	@Override
 	public void create() {
 		//setup log file
-		logFile = Gdx.files.local("log");
+		FileHandle logFile = Gdx.files.local("log");
 		logFile.delete();
+		log = new ServerLog(logFile);
+		log.start();
+		
+		if(!metrics.register())
+			log.warn("Failed to register the server metrics with JMX");
+		nextMetricsDump = System.currentTimeMillis() + METRICS_DUMP_INTERVAL;
+		
+		heartbeatTimeouts = new TimeoutWheel<>(TIMEOUT_SLOT_COUNT, TIMEOUT_SLOT_LENGTH, System.currentTimeMillis());
 		
+		//decodes incoming messages on every worker. The fields are only set once everything is open so dispose knows what to close
+		DatagramChannel channel = null;
+		IngressWorker[] ingressWorkers = new IngressWorker[config.ingressWorkers];
 		try {
-			socket = new DatagramSocket(SERVER_ADDR);
-			socket.setReceiveBufferSize(PACKET_LENGTH);
-			socket.setSendBufferSize(PACKET_LENGTH);
-		} catch(SocketException e) {
-			logFile.writeString("Failed to create a DatagramSocket. Exiting app...\n", true);
+			channel = DatagramChannel.open();
+			//the system may round the buffer sizes or cap them, so log what was actually set
+			if(config.receiveBufferSize > 0)
+				channel.setOption(StandardSocketOptions.SO_RCVBUF, config.receiveBufferSize);
+			if(config.sendBufferSize > 0)
+				channel.setOption(StandardSocketOptions.SO_SNDBUF, config.sendBufferSize);
+			channel.bind(config.getBindAddress());
+			channel.configureBlocking(false);
+			log.info("Listening on " + channel.getLocalAddress() + " receive buffer: "
+					+ channel.getOption(StandardSocketOptions.SO_RCVBUF) + " send buffer: "
+					+ channel.getOption(StandardSocketOptions.SO_SNDBUF) + " tick rate: " + config.tickRate
+					+ " ingress workers: " + config.ingressWorkers);
+			for(int i = 0; i < ingressWorkers.length; i++) {
+				ingressWorkers[i] = new IngressWorker(i, channel, this::queueCommand);
+			}
+		} catch(IOException | UnresolvedAddressException e) {
+			log.error("Failed to open a DatagramChannel on " + config.bindAddress + ":" + config.port + ". Exiting app...");
+			for(IngressWorker worker : ingressWorkers) {
+				if(worker != null)
+					worker.close();
+			}
+			if(channel != null) {
+				try {
+					channel.close();
+				} catch(IOException closeException) {}
+			}
 			Gdx.app.exit();
+			return;
 		}
+		this.channel = channel;
+		this.ingressWorkers = ingressWorkers;
 		
-		clients = new HashMap<>();
-		stage = new HeadlessStage();
+		//start threads
+		for(IngressWorker worker : ingressWorkers) {
+			worker.start();
+		}
+	}
+	
+	/**
+	 * Decodes a message into a Command and queues it for the next tick. Called by every {@link IngressWorker} at the same time.
+	 * Messages that can't be decoded or don't fit in the queue are counted in the metrics and dropped.
+	 * @param message Buffer holding the whole message from index 0 to its limit.
+	 * @param senderAddress Address the message was sent from.
+	 */
+	private void queueCommand(ByteBuffer message, SocketAddress senderAddress) {
+		if(message.limit() > MSG_ID_OFFSET)
+			metrics.countReceived(message.get(MSG_ID_OFFSET), message.limit());
 		
-		//handles incoming messages
-		//THE ONLY THREAD THAT CAN ADD OR REMOVE CLIENTS
-		ioThread = new Thread(() -> {
-			DatagramPacket packet = new DatagramPacket(new byte[PACKET_LENGTH], PACKET_LENGTH);
-			ByteBuffer buffer = ByteBuffer.wrap(packet.getData());
-			while(!Thread.interrupted()) {
-				try {
-					packet.setLength(PACKET_LENGTH);
-					socket.receive(packet);
-				} catch(Exception e) {
-					logFile.writeString("Failed to receive a packet\n", true);
-					continue;
-				}
-				
-				//unpack buffer
-				buffer.rewind();
-				@SuppressWarnings("unused")
-				final int dataLength = buffer.getInt();
-				final byte msgId = buffer.get();
-				final UUID senderId = new UUID(buffer.getLong(), buffer.getLong());
-				final ByteBuffer data = buffer;
-				
-				switch(msgId) //choose what to do with the message id
-				{
-				case MSG_CONNECT:
-					if(clients.containsKey(senderId)) {
-						logFile.writeString("Client with duplicate ID tried to connect ID: " + senderId + "\n", true);
-						break;
-					}
-					
-					Client newClient = new Client(senderId, packet.getSocketAddress());
-					synchronized(clients) {
-						clients.put(senderId, newClient);
-					}
-					synchronized(stage) {
-						stage.addActor(new Player(senderId));
-					}
-					
-					//respond to new Client with a MSG_CONNECT_HANDSHAKE
-					buffer.rewind();
-					buffer.putInt(0);
-					buffer.put(MSG_CONNECT_HANDSHAKE);
-					buffer.putLong(senderId.getMostSignificantBits());
-					buffer.putLong(senderId.getLeastSignificantBits());
-					packet.setLength(HEADER_LENGTH);
-					newClient.send(socket, packet);
-					
-					//Tell new client about all netActors in the game right now
-					synchronized(stage) {
-						for(Actor actor : stage.getActors()) {
-							if(actor instanceof Bolt) {
-								Bolt b = (Bolt)actor;
-								buffer.rewind();
-								buffer.putInt(32); //2 longs 4 floats
-								buffer.put(MSG_SPAWN_BOLT);
-								buffer.putLong(b.getShooterId().getMostSignificantBits());
-								buffer.putLong(b.getShooterId().getLeastSignificantBits());
-								buffer.putFloat(b.getX());
-								buffer.putFloat(b.getY());
-								buffer.putFloat(b.getRotation());
-								buffer.putFloat(b.getSpeed());
-								newClient.send(socket, packet);
-							} else if(actor instanceof Player) {
-								Player p = (Player)actor;
-								if(p.getNetId().equals(senderId))
-									continue;
-								buffer.rewind();
-								buffer.putInt(0);
-								buffer.put(MSG_CONNECT);
-								buffer.putLong(p.getNetId().getMostSignificantBits());
-								buffer.putLong(p.getNetId().getLeastSignificantBits());
-								packet.setLength(HEADER_LENGTH);
-								newClient.send(socket, packet);
-							}
-						}
-					}
-					
-					//tell other clients about the new connection
-					for(Client c : clients.values()) {
-						if(!c.clientId.equals(senderId)) {
-							buffer.rewind();
-							buffer.putInt(0);
-							buffer.put(MSG_CONNECT);
-							buffer.putLong(senderId.getMostSignificantBits());
-							buffer.putLong(senderId.getLeastSignificantBits());
-							packet.setLength(HEADER_LENGTH);
-							c.send(socket, packet);
-						}
-					}
-					
-					logFile.writeString("Added a new client ID: " + senderId + "\n", true);
-					break;
-				case MSG_DISCONNECT:
-					if(!clients.containsKey(senderId)) {
-						logFile.writeString("Client with ID: " + senderId + " tried to disconnect but is already disconnected\n", true);
-						break;
-					}
-					
-					//remove Client from clients HashMap and stage
-					synchronized(clients) {
-						clients.remove(senderId);
-					}
-					synchronized(stage) {
-						Iterator<Actor> iter = stage.getActors().iterator();
-						while(iter.hasNext()) {
-							Actor actor = iter.next();
-							if(actor instanceof NetActor) {
-								NetActor n = (NetActor)actor;
-								if(n.getNetId().equals(senderId)) {
-									iter.remove();
-									break;
-								}
-							}
-						}
-					}
-					
-					//send message to all clients
-					for(Client c : clients.values()) {
-						if(!c.clientId.equals(senderId)) {
-							c.send(socket, packet);
-						}
-					}
-					
-					logFile.writeString("Disconnected a client ID: " + senderId + "\n", true);
-					break;
-				case MSG_HEARTBEAT:
-					//make sure the client exists
-					if(!clients.containsKey(senderId)) {
-						logFile.writeString("Client with ID: " + senderId + " tried to send a heartbeat before connecting\n", true);
-						break;
-					}
-					
-					clients.get(senderId).timeSinceLastHeartbeat = 0L;
-					break;
-				case MSG_UPDATE_PLAYER:
-					//make sure the client exists
-					if(!clients.containsKey(senderId)) {
-						logFile.writeString("Client with ID: " + senderId + " tried to update its position before connecting\n", true);
-						break;
-					}
-					
-					float playerX = data.getFloat();
-					float playerY = data.getFloat();
-					float playerRot = data.getFloat();
-					synchronized(stage) {
-						for(Actor actor : stage.getActors()) {
-							if(actor instanceof Player) {
-								Player p = (Player)actor;
-								p.setPosition(playerX, playerY);
-								p.setRotation(playerRot);
-							}
-						}
-					}
-					
-					//tell all clients of the sender's new position
-					for(Client c : clients.values()) {
-						if(!c.clientId.equals(senderId)) {
-							c.send(socket, packet);
-						}
-					}
-					break;
-				case MSG_SPAWN_BOLT:
-					//make sure the client exists
-					if(!clients.containsKey(senderId)) {
-						logFile.writeString("Client with ID: " + senderId + " tried to fire a bolt before connecting\n", true);
-						break;
-					}
-					
-					//add bolt to list of actors
-					UUID boltNetId = new UUID(data.getLong(), data.getLong());
-					float boltX = data.getFloat();
-					float boltY = data.getFloat();
-					float boltRot = data.getFloat();
-					float boltSpeed = data.getFloat();
-					Bolt newBolt = Pools.get(Bolt.class).obtain().setShooterId(senderId).setSpeed(boltSpeed).setNetId(boltNetId);
-					newBolt.setPosition(boltX, boltY);
-					newBolt.setRotation(boltRot);
-					logFile.writeString("Added a bolt ID:" + newBolt.getNetId() + "\n", true);
-					synchronized(stage) {
-						stage.addActor(newBolt);
-					}
-					
-					//tell all clients that a bolt was spawned
-					for(Client c : clients.values()) {
-						if(!c.clientId.equals(senderId)) {
-							c.send(socket, packet);
-						}
-					}
-				}
+		//bad packets are only counted here since logging each one would allocate for every packet of a flood.
+		//logRejectedPackets() writes a summary once a second instead
+		final long position = commands.claim();
+		if(position < 0) {
+			metrics.countDroppedCommand();
+			return;
+		}
+		final Command command = commands.get(position);
+		boolean decoded;
+		try {
+			decoded = command.decode(message, senderAddress);
+		} catch(BufferUnderflowException e) { //the message is too short
+			decoded = false;
+		}
+		command.valid = decoded;
+		commands.publish(position); //the slot was claimed so it has to be published even if it can't be applied
+		if(!decoded)
+			metrics.countDecodeError();
+	}
+	
+	/**
+	 * Applies every Command that was queued since the last tick.
+	 * <p>Only call this from within the render loop!
+	 */
+	private void applyCommands() {
+		//stop at the capacity so workers that keep queueing can't hold up the tick
+		Command command;
+		for(int i = 0; i < commands.capacity() && (command = commands.peek()) != null; i++) {
+			if(command.valid)
+				applyCommand(command);
+			commands.release();
+		}
+	}
+	
+	/**
+	 * Applies one message from a client.
+	 * <p>Only call this from within the render loop!
+	 */
+	private void applyCommand(Command command) {
+		final int senderId = command.senderId;
+		final ByteBuffer out = renderBuffer;
+		
+		//every message except a MSG_CONNECT must come from a connected client and from the address it
+		//connected from. Session ids are handed out in order so they are easy to guess, and without this
+		//anyone could disconnect, move or fire as another player
+		final Client sender = clients.get(senderId);
+		if(command.msgId != MSG_CONNECT) {
+			if(sender == null) {
+				log.warn("Client with ID: " + senderId + " sent message " + command.msgId + " before connecting");
+				return;
+			}
+			if(!sender.address.equals(command.senderAddress)) {
+				log.warn("Dropped message " + command.msgId + " for client ID: " + senderId + " from another address: "
+						+ command.senderAddress);
+				return;
 			}
-		}, "io_thread");
+			//any message from a connected client shows that it's still there
+			sender.lastHeartbeatTime = tickTime;
+		}
 		
-		//keeps track of every clients heart beat to ensure it is still connected
-		heartbeatThread = new Thread(() -> {
-			final DatagramPacket packet = new DatagramPacket(new byte[PACKET_LENGTH], PACKET_LENGTH);
-			final ByteBuffer buffer = ByteBuffer.wrap(packet.getData());
+		switch(command.msgId) //choose what to do with the message id
+		{
+		case MSG_CONNECT:
+			final UUID clientUuid = new UUID(command.uuidMostBits, command.uuidLeastBits);
+			if(findClient(clientUuid) != null) {
+				log.warn("Client with duplicate UUID tried to connect UUID: " + clientUuid);
+				break;
+			}
+			final int newId = nextSessionId();
+			if(newId == NULL_ID) {
+				log.warn("No session id left for client UUID: " + clientUuid);
+				break;
+			}
+			
+			Client newClient = new Client(newId, clientUuid, command.senderAddress, bufferPool, metrics);
+			newClient.lastHeartbeatTime = tickTime;
+			clients.put(newId, newClient);
+			heartbeatTimeouts.schedule(newClient, tickTime + HEARTBEAT_TIMEOUT);
+			
+			//respond to new Client with a MSG_CONNECT_HANDSHAKE that holds its session id
+			putHeader(out, 0, MSG_CONNECT_HANDSHAKE, newId);
+			out.flip();
+			newClient.queueEvent(out);
+			newClient.endDatagram(); //the handshake is read on its own before the game starts
 			
-			long time = System.currentTimeMillis();
-			while(!Thread.interrupted()) {
-				long deltaTime = System.currentTimeMillis() - time;
-				time = System.currentTimeMillis();
-				
-				//check each clients heartbeat
-				Array<UUID> removedClients = null;
-				for(Entry<UUID, Client> timeEntry : clients.entrySet()) {
-					timeEntry.getValue().timeSinceLastHeartbeat += deltaTime;
-					if(timeEntry.getValue().timeSinceLastHeartbeat > HEARTBEAT_TIMEOUT) { //boot a client if the have no heart beat
-						logFile.writeString("Dropping client " + timeEntry.getKey() + " due to lack of heartbeat\n", true);
-						
-						removedClients = removedClients == null ? new Array<>() : removedClients;
-						removedClients.add(timeEntry.getKey());
-						
-						//send a disconnect to all clients to notify them of the disconnected player
-						for(Entry<UUID, Client> clientEntry : clients.entrySet()) {
-							//construct disconnect message for all clients
-							buffer.rewind();
-							buffer.putInt(0);
-							buffer.put(MSG_DISCONNECT);
-							buffer.putLong(timeEntry.getKey().getMostSignificantBits());
-							buffer.putLong(timeEntry.getKey().getLeastSignificantBits());
-							packet.setLength(HEADER_LENGTH);
-							clientEntry.getValue().send(socket, packet);
-						}
-					}
+			//tell the new client about every player in the game right now. Bolts are sent in the next snapshot
+			for(Client c : clients.values()) {
+				if(c.clientId == newId)
+					continue;
+				putHeader(out, 0, MSG_CONNECT, c.clientId);
+				out.flip();
+				newClient.queueEvent(out);
+			}
+			
+			//tell other clients about the new connection
+			putHeader(out, 0, MSG_CONNECT, newId);
+			out.flip();
+			for(Client c : clients.values()) {
+				if(c.clientId != newId) {
+					c.queueEvent(out);
 				}
-				
-				//avoid ConcurrentModificationException by removing clients outside of the loop
-				if(removedClients != null) {
-					for(UUID id : removedClients) {
-						clients.remove(id);
-					}
+			}
+			
+			log.info("Added a new client ID: " + newId + " UUID: " + clientUuid);
+			break;
+		case MSG_DISCONNECT:
+			removeClient(senderId);
+			log.info("Disconnected a client ID: " + senderId);
+			break;
+		case MSG_HEARTBEAT:
+			//every message refreshes the sender's heartbeat so a heartbeat has nothing else to do
+			break;
+		case MSG_UPDATE_PLAYER:
+			//only the sender's player is updated. Other clients get the new position in the next snapshot
+			sender.player.update(command.x, command.y, command.rotation);
+			break;
+		case MSG_SPAWN_BOLT:
+			//bolts must carry their shooter's session id in the upper 16 bits of their netId
+			int boltNetId = command.boltId;
+			if(boltNetId >>> 16 != senderId) {
+				log.warn("Client with ID: " + senderId + " tried to fire a bolt with someone else's ID: " + boltNetId);
+				break;
+			}
+			
+			//add bolt to list of actors
+			if(bolts.add(boltNetId, senderId, X_QUANTIZER.dequantize(command.x), Y_QUANTIZER.dequantize(command.y),
+					ANGLE_QUANTIZER.dequantize(command.rotation), command.speed) < 0) {
+				log.warn("Client with ID: " + senderId + " tried to fire a bolt that already exists ID: " + boltNetId);
+				break;
+			}
+			if(log.isEnabled(ServerLog.Level.DEBUG))
+				log.debug("Added a bolt ID:" + boltNetId);
+			
+			//tell all clients that a bolt was spawned. Fine to drop for a full queue since the next snapshot has it too
+			putHeader(out, 14, MSG_SPAWN_BOLT, senderId); //1 int 3 shorts 1 float
+			out.putInt(boltNetId);
+			out.putShort((short)command.x);
+			out.putShort((short)command.y);
+			out.putShort((short)command.rotation);
+			out.putFloat(command.speed);
+			out.flip();
+			for(Client c : clients.values()) {
+				if(c.clientId != senderId) {
+					c.queue(out);
 				}
 			}
-		}, "heartbeat_thread");
+			break;
+		case MSG_SNAPSHOT_ACK:
+			sender.acknowledge(command.sequence, tickTime);
+			break;
+		}
+	}
+	
+	/**
+	 * Removes a client and its Player and tells every other client that it disconnected.
+	 * <p>Only call this from within the render loop and not while iterating over clients!
+	 * @param clientId Session id of the client.
+	 */
+	private void removeClient(int clientId) {
+		Client removed = clients.remove(clientId);
+		droppedMessageCount += removed.getDroppedMessages();
+		droppedSnapshotCount += removed.getDroppedSnapshots();
+		removed.close();
 		
-		//start threads
-		ioThread.start();
-		heartbeatThread.start();
+		putHeader(renderBuffer, 0, MSG_DISCONNECT, clientId);
+		renderBuffer.flip();
+		for(Client c : clients.values()) {
+			c.queueEvent(renderBuffer);
+		}
 	}
 	
+	/**
+	 * Drops every client that hasn't sent a message within {@code NetConstants.HEARTBEAT_TIMEOUT}.
+	 * Only clients whose slot in the timeout wheel was passed are looked at.
+	 * <p>Only call this from within the render loop!
+	 */
+	private void checkHeartbeats() {
+		heartbeatTimeouts.advance(tickTime, dueClients);
+		for(int i = 0; i < dueClients.size; i++) {
+			Client c = dueClients.get(i);
+			if(clients.get(c.clientId) != c) //the client was already removed
+				continue;
+			
+			long deadline = c.lastHeartbeatTime + HEARTBEAT_TIMEOUT;
+			if(tickTime > deadline) { //boot a client if the have no heart beat
+				log.info("Dropping client " + c.clientId + " due to lack of heartbeat");
+				removeClient(c.clientId);
+			} else { //the client sent something since it was scheduled
+				heartbeatTimeouts.schedule(c, deadline);
+			}
+		}
+		dueClients.clear();
+	}
+	
+	/**
+	 * Clears a buffer and writes a message header into it. The buffer must be flipped after the data is written.
+	 * @param dataLength Number of bytes of data after the header.
+	 * @param senderId Session id to write as the sender.
+	 */
+	private static void putHeader(ByteBuffer buffer, int dataLength, byte msgId, int senderId) {
+		buffer.clear();
+		buffer.putInt(dataLength);
+		buffer.put(msgId);
+		buffer.putShort((short)senderId);
+	}
+	
+	/**
+	 * Finds a connected client by the UUID it connected with.
+	 * @return The client or null if no client connected with the UUID.
+	 */
+	private Client findClient(UUID clientUuid) {
+		for(Client c : clients.values()) {
+			if(c.clientUuid.equals(clientUuid))
+				return c;
+		}
+		return null;
+	}
+	
+	/**
+	 * Finds the next session id that isn't being used by a client.
+	 * @return The session id or {@code NetConstants.NULL_ID} if every session id is in use.
+	 */
+	private int nextSessionId() {
+		for(int i = 0; i < MAX_SESSION_ID; i++) {
+			lastSessionId = lastSessionId % MAX_SESSION_ID + 1;
+			if(!clients.containsKey(lastSessionId))
+				return lastSessionId;
+		}
+		return NULL_ID;
+	}
+	
+	/**
+	 * Parks until the next simulation tick is due and then runs it. Shuts the server down if the render thread is interrupted.
+	 */
 	@Override
 	public void render() {
-		synchronized(stage) {
-			Array<Actor> removedActors = null;
-			for(Actor actor : stage.getActors()) {
-				if(actor instanceof Bolt) { //TODO implement player-bolt collision
-					Bolt bolt = (Bolt)actor;
-					bolt.addAction(Actions.moveBy(bolt.getSpeedCompX() * Gdx.graphics.getDeltaTime(), bolt.getSpeedCompY() * Gdx.graphics.getDeltaTime()));
-					//remove the bolt if its out of bounds
-					if(bolt.getX() < 0 || bolt.getX() > 2000 || bolt.getY() < 0 || bolt.getY() > 1000) { //TODO make better boundary management
-						logFile.writeString("Removed a bolt ID:" + bolt.getNetId() + "\n", true);
-						//Send a MSG_REMOVE_BOLT packet to all clients
-						renderBuffer.rewind();
-						int dataLength = 32; //4 longs
-						renderBuffer.putInt(dataLength);
-						renderBuffer.put(MSG_REMOVE_BOLT);
-						renderBuffer.putLong(bolt.getShooterId().getMostSignificantBits());
-						renderBuffer.putLong(bolt.getShooterId().getLeastSignificantBits());
-						renderBuffer.putLong(bolt.getNetId().getMostSignificantBits());
-						renderBuffer.putLong(bolt.getNetId().getLeastSignificantBits());
-						renderBuffer.putLong(0);
-						renderBuffer.putLong(0);
-						renderPacket.setLength(HEADER_LENGTH + dataLength);
-						
-						Pools.free(bolt);
-						removedActors = removedActors == null ? new Array<Actor>() : removedActors;
-						removedActors.add(bolt);
-						
-						synchronized(clients) {
-							for(Client c : clients.values()) {
-								c.send(socket, renderPacket);
-							}
-						}
-					}
-				}
+		if(!tickScheduler.update()) {
+			log.info("Render thread was interrupted. Exiting app...");
+			Gdx.app.exit();
+		}
+	}
+	
+	/**
+	 * Checks a bolt against every player it could be touching.
+	 * <p>Only call this from within the render loop!
+	 * @param index Index of the bolt in {@link #bolts}.
+	 * @return The netId of a player the bolt overlaps that didn't fire it or {@code NetConstants.NULL_ID} if there isn't one.
+	 */
+	private int findHitPlayer(int index) {
+		Polygon hitbox = bolts.getHitbox(index);
+		hitCandidates.clear();
+		playerGrid.query(hitbox.getBoundingRectangle(), hitCandidates);
+		for(int i = 0; i < hitCandidates.size; i++) {
+			PlayerState player = players.get(hitCandidates.get(i));
+			if(player.playerId != bolts.getShooterId(index) && Intersector.overlapConvexPolygons(hitbox, player.getHitbox()))
+				return player.playerId;
+		}
+		return NULL_ID;
+	}
+	
+	/**
+	 * Tells every client that a bolt was removed and removes it from {@link #bolts}.
+	 * The last bolt is moved into its index.
+	 * <p>Only call this from within the render loop!
+	 * @param index Index of the bolt in {@link #bolts}.
+	 * @param hitPlayerId netId of the player the bolt hit or {@code NetConstants.NULL_ID} if it didn't hit a player.
+	 */
+	private void removeBolt(int index, int hitPlayerId) {
+		if(log.isEnabled(ServerLog.Level.DEBUG))
+			log.debug("Removed a bolt ID:" + bolts.getId(index) + " hit player ID: " + hitPlayerId);
+		
+		//Send a MSG_REMOVE_BOLT packet to all clients
+		putHeader(renderBuffer, 6, MSG_REMOVE_BOLT, bolts.getShooterId(index)); //1 int & 1 short
+		renderBuffer.putInt(bolts.getId(index));
+		renderBuffer.putShort((short)hitPlayerId);
+		renderBuffer.flip();
+		for(Client c : clients.values()) {
+			c.queueEvent(renderBuffer);
+		}
+		
+		bolts.remove(index);
+	}
+	
+	/**
+	 * Applies the messages received since the last tick, advances the simulation by one fixed step and
+	 * sends the new state to every client.
+	 * @param delta Fixed time step in seconds.
+	 */
+	private void tick(float delta) {
+		final long tickStart = System.nanoTime();
+		tickTime = System.currentTimeMillis();
+		applyCommands();
+		checkHeartbeats();
+		
+		//rebuild the broad phase out of every player that has a position yet
+		players.clear();
+		playerGrid.clear();
+		for(Client client : clients.values()) {
+			if(!client.player.hasState())
+				continue;
+			playerGrid.insert(players.size, client.player.getHitbox().getBoundingRectangle());
+			players.add(client.player);
+		}
+		
+		bolts.integrate(delta);
+		
+		//iterate backwards because removing a bolt moves the last bolt into its index
+		for(int i = bolts.size() - 1; i >= 0; i--) {
+			//remove the bolt if its out of bounds
+			float x = bolts.getX(i), y = bolts.getY(i);
+			if(x < 0 || x > config.worldWidth || y < 0 || y > config.worldHeight) {
+				removeBolt(i, NULL_ID);
+				continue;
 			}
-			if(removedActors != null) {
-				for(Actor actor : removedActors) {
-					actor.remove();
-				}
+			
+			//remove the bolt if it hit a player
+			int hitPlayerId = findHitPlayer(i);
+			if(hitPlayerId != NULL_ID) {
+				removeBolt(i, hitPlayerId);
 			}
 		}
 		
-		stage.act();
+		//record this tick's snapshot and send it to each client encoded against the last snapshot it acknowledged
+		SnapshotState snapshot = snapshots.begin(snapshotSequence++);
+		for(int i = 0; i < players.size; i++) {
+			PlayerState player = players.get(i);
+			snapshot.put(player.playerId, player.getX(), player.getY(), player.getRotation());
+		}
+		//bolts move in straight lines so the client can predict them from their velocity
+		for(int i = 0; i < bolts.size(); i++) {
+			snapshots.putMoving(bolts.getId(i), X_QUANTIZER.quantize(bolts.getX(i)), Y_QUANTIZER.quantize(bolts.getY(i)),
+					ANGLE_QUANTIZER.quantize(bolts.getRotation(i)),
+					SnapshotState.toFixedVelocity(bolts.getVelocityX(i) * delta, X_QUANTIZER),
+					SnapshotState.toFixedVelocity(bolts.getVelocityY(i) * delta, Y_QUANTIZER));
+		}
+		for(Client client : clients.values()) {
+			client.queueSnapshot(snapshots.getSnapshot(client.getAckedSequence()), tickTime);
+		}
 		
-		//send packets to update the actors for clients
-		synchronized(clients) {
-			for(Client client : clients.values()) {
-				synchronized(stage) {
-					for(Actor actor : stage.getActors()) {
-						if(actor instanceof Bolt) {
-							Bolt bolt = (Bolt)actor;
-							renderBuffer.rewind();
-							int dataLength = 28; //2 longs & 3 floats
-							renderBuffer.putInt(dataLength);
-							renderBuffer.put(MSG_UPDATE);
-							renderBuffer.putLong(bolt.getShooterId().getMostSignificantBits());
-							renderBuffer.putLong(bolt.getShooterId().getLeastSignificantBits());
-							renderBuffer.putLong(bolt.getNetId().getMostSignificantBits());
-							renderBuffer.putLong(bolt.getNetId().getLeastSignificantBits());
-							renderBuffer.putFloat(bolt.getX());
-							renderBuffer.putFloat(bolt.getY());
-							renderBuffer.putFloat(bolt.getRotation());
-							renderPacket.setLength(HEADER_LENGTH + dataLength);
-							client.send(socket, renderPacket);
-						}
-					}
-				}
-			}
+		flushClients();
+		metrics.recordTick(System.nanoTime() - tickStart);
+		publishMetrics();
+	}
+	
+	/**
+	 * Publishes the metrics that belong to the render loop once every {@link #METRICS_PUBLISH_INTERVAL}
+	 * and writes every metric to the log once every {@link #METRICS_DUMP_INTERVAL}.
+	 * <p>Only call this from within the render loop!
+	 */
+	private void publishMetrics() {
+		if(tickTime < nextMetricsPublish)
+			return;
+		nextMetricsPublish = tickTime + METRICS_PUBLISH_INTERVAL;
+		
+		metrics.publish(clients.size, bolts.size(), outboundQueueDepth, clients.values());
+		logRejectedPackets();
+		
+		if(tickTime >= nextMetricsDump) {
+			nextMetricsDump = tickTime + METRICS_DUMP_INTERVAL;
+			log.info("Metrics\n" + metrics.getReport());
+		}
+	}
+	
+	/**
+	 * Writes how many packets the ingress workers dropped since the last call, if any.
+	 * <p>Only call this from within the render loop!
+	 */
+	private void logRejectedPackets() {
+		long decodeErrors = metrics.getDecodeErrors(), droppedCommands = metrics.getDroppedCommands();
+		if(decodeErrors > loggedDecodeErrors)
+			log.warn("Received " + (decodeErrors - loggedDecodeErrors) + " packets that couldn't be decoded in the last "
+					+ METRICS_PUBLISH_INTERVAL + "ms");
+		if(droppedCommands > loggedDroppedCommands)
+			log.warn("Command queue full. Dropped " + (droppedCommands - loggedDroppedCommands) + " messages in the last "
+					+ METRICS_PUBLISH_INTERVAL + "ms");
+		loggedDecodeErrors = decodeErrors;
+		loggedDroppedCommands = droppedCommands;
+	}
+	
+	/** @return The server's metrics. Safe to read from any thread. */
+	public ServerMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Sends everything queued for each client during this tick and updates the outbound queue statistics.
+	 * <p>Only call this from within the render loop!
+	 */
+	private void flushClients() {
+		int depth = 0;
+		long droppedMessages = droppedMessageCount, droppedSnapshots = droppedSnapshotCount;
+		for(Client client : clients.values()) {
+			depth += client.flush(channel);
+			droppedMessages += client.getDroppedMessages();
+			droppedSnapshots += client.getDroppedSnapshots();
 		}
+		outboundQueueDepth = depth;
+		totalDroppedMessages = droppedMessages;
+		totalDroppedSnapshots = droppedSnapshots;
+	}
+	
+	/** @return Number of datagrams that couldn't be sent yet after the last tick, summed over every client. */
+	public int getOutboundQueueDepth() {
+		return outboundQueueDepth;
+	}
+	
+	/** @return Number of outbound messages dropped because a client's queue was full. */
+	public long getDroppedMessageCount() {
+		return totalDroppedMessages;
+	}
+	
+	/** @return Number of snapshots skipped because a client was falling behind. */
+	public long getDroppedSnapshotCount() {
+		return totalDroppedSnapshots;
 	}
 	
 	@Override
 	public void dispose() {
-		logFile.writeString("Disposing...\n", true);
+		log.info("Disposing...");
 		
-		heartbeatThread.interrupt();
-		ioThread.interrupt();
+		//wait for each thread to finish. Both are still null if the server failed to start
+		if(ingressWorkers != null) {
+			for(IngressWorker worker : ingressWorkers) {
+				worker.close();
+			}
+		}
 		
-		//wait for each thread to finish
-		try {
-			heartbeatThread.join();
-			ioThread.join();
-		} catch(InterruptedException e) {}
+		if(channel != null) {
+			try {
+				channel.close();
+			} catch(IOException e) {
+				log.error("Failed to close the DatagramChannel");
+			}
+		}
 		
-		logFile.writeString("Server disposed\n", true);
+		log.info("Ran " + tickScheduler.getTickCount() + " ticks, " + tickScheduler.getOverrunCount() + " overran, "
+				+ tickScheduler.getDroppedTickCount() + " dropped");
+		log.info("Dropped " + totalDroppedMessages + " outbound messages and " + totalDroppedSnapshots
+				+ " snapshots");
+		log.info("Metrics\n" + metrics.getReport());
+		metrics.unregister();
+		log.info("Server disposed");
+		log.close();
 	}
 }
@@ -0,0 +1,79 @@
+package com.fwumdesoft.shoot.net.server;
+
+import static com.fwumdesoft.shoot.net.NetConstants.*;
+import java.net.InetSocketAddress;
+import com.fwumdesoft.shoot.net.NetSettings;
+
+/**
+ * Settings for a {@link Server}. Change the fields before creating the server with it.
+ * <p>{@link #load(String...)} reads them with {@link NetSettings} using these names:
+ * <li>bind: Address the server listens on. Default every address. Use 127.0.0.1 for a local cluster.
+ * <li>port: Port the server listens on. Default {@code NetConstants.DEFAULT_PORT}.
+ * <li>receiveBuffer: Size in bytes of the socket's receive buffer. 0 leaves the system default.
+ * <li>sendBuffer: Size in bytes of the socket's send buffer. 0 leaves the system default.
+ * <li>tickRate: Number of simulation ticks per second.
+ * <li>ingressWorkers: Number of threads that receive and decode packets. Default 1. They share one channel that only
+ * one of them can receive from at a time, so more workers don't receive any faster.
+ * <li>worldWidth, worldHeight: Size of the area bolts are kept in. Can't be bigger than the area
+ * positions can be sent in, which ends {@code NetConstants.WORLD_MARGIN} past the default world.
+ */
+public class ServerConfig {
+	/** Holds a burst of a few thousand packets that arrive while every ingress worker is busy. */
+	public static final int DEFAULT_RECEIVE_BUFFER_SIZE = 4 * 1024 * 1024;
+	/** Holds a tick of snapshots for a few hundred clients. */
+	public static final int DEFAULT_SEND_BUFFER_SIZE = 1024 * 1024;
+	
+	public String bindAddress = "0.0.0.0";
+	public int port = DEFAULT_PORT;
+	public int receiveBufferSize = DEFAULT_RECEIVE_BUFFER_SIZE;
+	public int sendBufferSize = DEFAULT_SEND_BUFFER_SIZE;
+	public int tickRate = DEFAULT_TICK_RATE;
+	public int ingressWorkers = Server.DEFAULT_INGRESS_WORKERS;
+	public float worldWidth = WORLD_WIDTH;
+	public float worldHeight = WORLD_HEIGHT;
+	
+	/**
+	 * Reads the settings with {@link NetSettings}.
+	 * @param args Arguments that look like {@code name=value}.
+	 * @throws IllegalArgumentException If a setting isn't valid.
+	 */
+	public static ServerConfig load(String... args) {
+		NetSettings settings = new NetSettings(args);
+		ServerConfig config = new ServerConfig();
+		config.bindAddress = settings.getString("bind", config.bindAddress);
+		config.port = settings.getInt("port", config.port);
+		config.receiveBufferSize = settings.getInt("receiveBuffer", config.receiveBufferSize);
+		config.sendBufferSize = settings.getInt("sendBuffer", config.sendBufferSize);
+		config.tickRate = settings.getInt("tickRate", config.tickRate);
+		config.ingressWorkers = settings.getInt("ingressWorkers", config.ingressWorkers);
+		config.worldWidth = settings.getFloat("worldWidth", config.worldWidth);
+		config.worldHeight = settings.getFloat("worldHeight", config.worldHeight);
+		config.validate();
+		return config;
+	}
+	
+	/**
+	 * @throws IllegalArgumentException If a setting isn't valid.
+	 */
+	public void validate() {
+		if(port <= 0 || port > 0xFFFF)
+			throw new IllegalArgumentException("port must be between 1 and 65535");
+		if(receiveBufferSize < 0 || sendBufferSize < 0)
+			throw new IllegalArgumentException("Socket buffer sizes can't be negative");
+		if(tickRate <= 0)
+			throw new IllegalArgumentException("tickRate must be positive");
+		if(ingressWorkers <= 0)
+			throw new IllegalArgumentException("ingressWorkers must be positive");
+		if(!(worldWidth > 0 && worldWidth <= WORLD_WIDTH + WORLD_MARGIN))
+			throw new IllegalArgumentException("worldWidth must be between 0 and " + (WORLD_WIDTH + WORLD_MARGIN));
+		if(!(worldHeight > 0 && worldHeight <= WORLD_HEIGHT + WORLD_MARGIN))
+			throw new IllegalArgumentException("worldHeight must be between 0 and " + (WORLD_HEIGHT + WORLD_MARGIN));
+	}
+	
+	/**
+	 * @return The address the server listens on.
+	 */
+	public InetSocketAddress getBindAddress() {
+		return new InetSocketAddress(bindAddress, port);
+	}
+}
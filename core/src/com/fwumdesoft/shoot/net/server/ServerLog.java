@@ -0,0 +1,254 @@
+package com.fwumdesoft.shoot.net.server;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * The server's log. Logging never waits on the disk: each entry is queued on a lock-free ring buffer
+ * and a background thread writes every queued entry to the file in one batch.
+ * <p>When the ring buffer is full new entries are dropped and counted instead of blocking the thread
+ * that logged them, and the number that were dropped is written to the log later. The file is rotated
+ * once it grows past a max size, keeping a set number of old files named {@code <file>.1}, {@code <file>.2}...
+ * <p>Every method can be called from any thread.
+ */
+public class ServerLog {
+	/** Severity of a log entry. Entries below the log's level are ignored. */
+	public enum Level {
+		DEBUG, INFO, WARN, ERROR
+	}
+	
+	/** Default max number of entries waiting to be written. Must be a power of two. */
+	static final int DEFAULT_CAPACITY = 8192;
+	/** Default size in bytes the log file can grow to before it is rotated. */
+	static final long DEFAULT_MAX_FILE_SIZE = 4L * 1024 * 1024;
+	/** Default number of rotated log files to keep. */
+	static final int DEFAULT_MAX_BACKUPS = 3;
+	/** Time in nanoseconds the writer thread sleeps when there is nothing to write. */
+	private static final long WRITE_INTERVAL = 10000000L;
+	
+	private final FileHandle file;
+	private final long maxFileSize;
+	private final int maxBackups;
+	private final MpscRingBuffer<Entry> entries;
+	private final AtomicLong droppedCount = new AtomicLong();
+	private volatile Level level = Level.INFO;
+	private volatile boolean running;
+	private final Thread writerThread;
+	
+	//only referenced from within the writer thread
+	private Writer writer;
+	private long fileSize;
+	private long reportedDropCount;
+	private final StringBuilder batch = new StringBuilder(4096);
+	
+	/**
+	 * @param file File to write to. Anything already in it is kept and written after.
+	 */
+	public ServerLog(FileHandle file) {
+		this(file, DEFAULT_CAPACITY, DEFAULT_MAX_FILE_SIZE, DEFAULT_MAX_BACKUPS);
+	}
+	
+	/**
+	 * @param file File to write to. Anything already in it is kept and written after.
+	 * @param capacity Max number of entries waiting to be written. Must be a power of two.
+	 * @param maxFileSize Size in bytes the file can grow to before it is rotated.
+	 * @param maxBackups Number of rotated files to keep. 0 deletes the file when it is rotated.
+	 */
+	public ServerLog(FileHandle file, int capacity, long maxFileSize, int maxBackups) {
+		if(maxFileSize <= 0)
+			throw new IllegalArgumentException("maxFileSize must be positive");
+		if(maxBackups < 0)
+			throw new IllegalArgumentException("maxBackups can't be negative");
+		this.file = file;
+		this.maxFileSize = maxFileSize;
+		this.maxBackups = maxBackups;
+		entries = new MpscRingBuffer<>(capacity);
+		writerThread = new Thread(this::writeLoop, "log_writer");
+		writerThread.setDaemon(true);
+	}
+	
+	/**
+	 * Starts the writer thread. Entries logged before this are written once it starts.
+	 */
+	public void start() {
+		running = true;
+		writerThread.start();
+	}
+	
+	/**
+	 * Writes every entry that was already logged and stops the writer thread. Later entries are ignored.
+	 */
+	public void close() {
+		running = false;
+		LockSupport.unpark(writerThread);
+		try {
+			writerThread.join();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	public void debug(String message) {
+		log(Level.DEBUG, message);
+	}
+	
+	public void info(String message) {
+		log(Level.INFO, message);
+	}
+	
+	public void warn(String message) {
+		log(Level.WARN, message);
+	}
+	
+	public void error(String message) {
+		log(Level.ERROR, message);
+	}
+	
+	/**
+	 * Queues an entry to be written. Never blocks.
+	 * @param message Message without a trailing line break.
+	 */
+	public void log(Level level, String message) {
+		if(level.ordinal() < this.level.ordinal())
+			return;
+		if(!entries.offer(new Entry(System.currentTimeMillis(), level, Thread.currentThread().getName(), message)))
+			droppedCount.incrementAndGet();
+	}
+	
+	/**
+	 * @return true if entries of the level are written. Use this to skip building messages that would be ignored.
+	 */
+	public boolean isEnabled(Level level) {
+		return level.ordinal() >= this.level.ordinal();
+	}
+	
+	public void setLevel(Level level) {
+		this.level = level;
+	}
+	
+	public Level getLevel() {
+		return level;
+	}
+	
+	/** @return Number of entries dropped because too many were waiting to be written. */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+	
+	/**
+	 * Writes queued entries in batches until the log is closed.
+	 */
+	private void writeLoop() {
+		open();
+		while(running) {
+			if(!writeBatch())
+				LockSupport.parkNanos(this, WRITE_INTERVAL);
+		}
+		
+		//write whatever was logged before close() was called
+		while(writeBatch());
+		try {
+			if(writer != null)
+				writer.close();
+		} catch(IOException e) {
+			System.err.println("Failed to close the log file");
+		}
+	}
+	
+	/**
+	 * Writes every entry that is queued right now.
+	 * @return false if nothing was written.
+	 */
+	private boolean writeBatch() {
+		long dropped = droppedCount.get();
+		if(dropped != reportedDropCount) {
+			append(new Entry(System.currentTimeMillis(), Level.WARN, writerThread.getName(),
+					"Dropped " + (dropped - reportedDropCount) + " log entries"));
+			reportedDropCount = dropped;
+		}
+		
+		Entry entry;
+		for(int i = 0; i < entries.capacity() && (entry = entries.poll()) != null; i++) {
+			append(entry);
+		}
+		if(batch.length() == 0)
+			return false;
+		
+		try {
+			if(writer != null) {
+				writer.write(batch.toString());
+				writer.flush();
+			}
+		} catch(IOException e) {
+			System.err.println("Failed to write to the log file");
+		}
+		fileSize += batch.length();
+		batch.setLength(0);
+		
+		if(fileSize >= maxFileSize)
+			rotate();
+		return true;
+	}
+	
+	private void append(Entry entry) {
+		batch.append(Instant.ofEpochMilli(entry.time)).append(' ').append(entry.level).append(" [").append(entry.thread)
+				.append("] ").append(entry.message).append('\n');
+	}
+	
+	/**
+	 * Moves the log file to the first backup, shifting older backups back and deleting the oldest one.
+	 */
+	private void rotate() {
+		try {
+			if(writer != null)
+				writer.close();
+		} catch(IOException e) {
+			System.err.println("Failed to close the log file");
+		}
+		
+		if(maxBackups == 0) {
+			file.delete();
+		} else {
+			file.sibling(file.name() + "." + maxBackups).delete();
+			for(int i = maxBackups - 1; i >= 1; i--) {
+				FileHandle backup = file.sibling(file.name() + "." + i);
+				if(backup.exists())
+					backup.moveTo(file.sibling(file.name() + "." + (i + 1)));
+			}
+			file.moveTo(file.sibling(file.name() + ".1"));
+		}
+		open();
+	}
+	
+	private void open() {
+		try {
+			writer = file.writer(true, "UTF-8");
+			fileSize = file.exists() ? file.length() : 0;
+		} catch(GdxRuntimeException e) {
+			writer = null;
+			System.err.println("Failed to open the log file " + file.path());
+		}
+	}
+	
+	/**
+	 * One queued log entry.
+	 */
+	private static class Entry {
+		final long time;
+		final Level level;
+		final String thread;
+		final String message;
+		
+		Entry(long time, Level level, String thread, String message) {
+			this.time = time;
+			this.level = level;
+			this.thread = thread;
+			this.message = message;
+		}
+	}
+}
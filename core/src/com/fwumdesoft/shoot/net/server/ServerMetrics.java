@@ -0,0 +1,274 @@
+package com.fwumdesoft.shoot.net.server;
+
+import static com.fwumdesoft.shoot.net.NetConstants.*;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counts what the server is doing so capacity can be measured under real load: how long ticks take,
+ * packets and bytes per message id in each direction, packets that couldn't be decoded, how many
+ * actors exist and the round trip time and snapshot loss of each client.
+ * <p>Counters can be updated from any thread without locking. Values that belong to the render loop,
+ * like the per client stats, are published by it with {@link #publish(int, int, int, Iterable)} and
+ * every getter can be called from any thread. Publishing only copies primitives into arrays that are reused,
+ * and the per client lines are only formatted when they are read. The metrics can be read through JMX once {@link #register()}
+ * is called, and {@link #getReport()} formats all of them for the log.
+ */
+public class ServerMetrics implements ServerMetricsMXBean {
+	/** Name the metrics are registered under with JMX. */
+	public static final String OBJECT_NAME = "com.fwumdesoft.shoot:type=ServerMetrics";
+	private static final double NANOS_PER_MILLI = 1000000.0;
+	private static final String[] MESSAGE_NAMES = new String[256];
+	
+	static {
+		MESSAGE_NAMES[MSG_CONNECT & 0xFF] = "CONNECT";
+		MESSAGE_NAMES[MSG_DISCONNECT & 0xFF] = "DISCONNECT";
+		MESSAGE_NAMES[MSG_HEARTBEAT & 0xFF] = "HEARTBEAT";
+		MESSAGE_NAMES[MSG_UPDATE_PLAYER & 0xFF] = "UPDATE_PLAYER";
+		MESSAGE_NAMES[MSG_CONNECT_HANDSHAKE & 0xFF] = "CONNECT_HANDSHAKE";
+		MESSAGE_NAMES[MSG_SPAWN_BOLT & 0xFF] = "SPAWN_BOLT";
+		MESSAGE_NAMES[MSG_UPDATE & 0xFF] = "UPDATE";
+		MESSAGE_NAMES[MSG_REMOVE_BOLT & 0xFF] = "REMOVE_BOLT";
+		MESSAGE_NAMES[MSG_SNAPSHOT & 0xFF] = "SNAPSHOT";
+		MESSAGE_NAMES[MSG_SNAPSHOT_ACK & 0xFF] = "SNAPSHOT_ACK";
+	}
+	
+	private final LatencyHistogram tickTimes = new LatencyHistogram();
+	/** Counters indexed by message id. */
+	private final AtomicLongArray packetsIn = new AtomicLongArray(256), bytesIn = new AtomicLongArray(256),
+			messagesOut = new AtomicLongArray(256), bytesOut = new AtomicLongArray(256);
+	private final AtomicLong decodeErrors = new AtomicLong();
+	private final AtomicLong droppedCommands = new AtomicLong();
+	
+	//published by the render loop
+	private volatile int clientCount, boltCount, outboundQueueDepth;
+	/** Per client values. Only accessed while synchronized on this. They grow but are never shrunk. */
+	private int publishedClients;
+	private int[] clientIds = new int[16], clientQueueDepths = new int[16];
+	private float[] clientRoundTripTimes = new float[16], clientSnapshotLoss = new float[16];
+	
+	/**
+	 * Counts a packet received from a client.
+	 * @param length Length of the whole packet in bytes.
+	 */
+	void countReceived(byte msgId, int length) {
+		packetsIn.incrementAndGet(msgId & 0xFF);
+		bytesIn.addAndGet(msgId & 0xFF, length);
+	}
+	
+	/**
+	 * Counts a message queued to be sent to a client. Messages share datagrams so these are counted
+	 * per message rather than per packet.
+	 * @param length Length of the whole message in bytes.
+	 */
+	void countSent(byte msgId, int length) {
+		messagesOut.incrementAndGet(msgId & 0xFF);
+		bytesOut.addAndGet(msgId & 0xFF, length);
+	}
+	
+	/** Counts a packet that was too short or had an unknown message id. */
+	void countDecodeError() {
+		decodeErrors.incrementAndGet();
+	}
+	
+	/** Counts a message dropped because the command queue was full. */
+	void countDroppedCommand() {
+		droppedCommands.incrementAndGet();
+	}
+	
+	/**
+	 * Records how long a tick took. Only call this from within the render loop!
+	 */
+	void recordTick(long nanos) {
+		tickTimes.record(nanos);
+	}
+	
+	/**
+	 * Publishes the state owned by the render loop. Only call this from within the render loop!
+	 * <p>Doesn't allocate unless there are more clients than ever before.
+	 * @param clients Every connected client. There must be clientCount of them.
+	 */
+	void publish(int clientCount, int boltCount, int outboundQueueDepth, Iterable<Client> clients) {
+		this.clientCount = clientCount;
+		this.boltCount = boltCount;
+		this.outboundQueueDepth = outboundQueueDepth;
+		synchronized(this) {
+			if(clientIds.length < clientCount) {
+				int capacity = Math.max(clientCount, clientIds.length * 2);
+				clientIds = new int[capacity];
+				clientQueueDepths = new int[capacity];
+				clientRoundTripTimes = new float[capacity];
+				clientSnapshotLoss = new float[capacity];
+			}
+			int i = 0;
+			for(Client client : clients) {
+				clientIds[i] = client.clientId;
+				clientRoundTripTimes[i] = client.getRoundTripTime();
+				clientSnapshotLoss[i] = client.getSnapshotLoss();
+				clientQueueDepths[i] = client.getQueueDepth();
+				i++;
+			}
+			publishedClients = i;
+		}
+	}
+	
+	/**
+	 * Registers these metrics with the platform MBeanServer under {@link #OBJECT_NAME}.
+	 * @return false if they couldn't be registered.
+	 */
+	public boolean register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if(server.isRegistered(name))
+				server.unregisterMBean(name);
+			server.registerMBean(this, name);
+			return true;
+		} catch(JMException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Removes these metrics from the platform MBeanServer if they are registered.
+	 */
+	public void unregister() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if(server.isRegistered(name))
+				server.unregisterMBean(name);
+		} catch(JMException e) {}
+	}
+	
+	@Override
+	public long getTickCount() {
+		return tickTimes.getTotalCount();
+	}
+	
+	@Override
+	public double getTickMeanMillis() {
+		return tickTimes.getMean() / NANOS_PER_MILLI;
+	}
+	
+	@Override
+	public double getTickP50Millis() {
+		return tickTimes.getValueAtPercentile(50) / NANOS_PER_MILLI;
+	}
+	
+	@Override
+	public double getTickP99Millis() {
+		return tickTimes.getValueAtPercentile(99) / NANOS_PER_MILLI;
+	}
+	
+	@Override
+	public double getTickP999Millis() {
+		return tickTimes.getValueAtPercentile(99.9) / NANOS_PER_MILLI;
+	}
+	
+	@Override
+	public double getTickMaxMillis() {
+		return tickTimes.getMax() / NANOS_PER_MILLI;
+	}
+	
+	@Override
+	public long getPacketsReceived() {
+		return sum(packetsIn);
+	}
+	
+	@Override
+	public long getBytesReceived() {
+		return sum(bytesIn);
+	}
+	
+	@Override
+	public long getMessagesSent() {
+		return sum(messagesOut);
+	}
+	
+	@Override
+	public long getBytesSent() {
+		return sum(bytesOut);
+	}
+	
+	@Override
+	public long getDecodeErrors() {
+		return decodeErrors.get();
+	}
+	
+	@Override
+	public long getDroppedCommands() {
+		return droppedCommands.get();
+	}
+	
+	@Override
+	public int getClientCount() {
+		return clientCount;
+	}
+	
+	@Override
+	public int getBoltCount() {
+		return boltCount;
+	}
+	
+	@Override
+	public int getOutboundQueueDepth() {
+		return outboundQueueDepth;
+	}
+	
+	@Override
+	public String[] getClientStats() {
+		//copy the values so the render loop isn't kept waiting while they are formatted
+		int count;
+		int[] ids, queueDepths;
+		float[] roundTripTimes, snapshotLoss;
+		synchronized(this) {
+			count = publishedClients;
+			ids = Arrays.copyOf(clientIds, count);
+			queueDepths = Arrays.copyOf(clientQueueDepths, count);
+			roundTripTimes = Arrays.copyOf(clientRoundTripTimes, count);
+			snapshotLoss = Arrays.copyOf(clientSnapshotLoss, count);
+		}
+		String[] stats = new String[count];
+		for(int i = 0; i < count; i++) {
+			stats[i] = String.format("client %d rtt: %.1fms snapshot loss: %.1f%% queue: %d", ids[i], roundTripTimes[i],
+					snapshotLoss[i] * 100f, queueDepths[i]);
+		}
+		return stats;
+	}
+	
+	@Override
+	public String getReport() {
+		StringBuilder report = new StringBuilder(1024);
+		report.append(String.format("ticks: %d mean: %.3fms p50: %.3fms p99: %.3fms p99.9: %.3fms max: %.3fms\n",
+				getTickCount(), getTickMeanMillis(), getTickP50Millis(), getTickP99Millis(), getTickP999Millis(),
+				getTickMaxMillis()));
+		report.append("clients: ").append(clientCount).append(" bolts: ").append(boltCount).append(" outbound queue: ")
+				.append(outboundQueueDepth).append(" decode errors: ").append(decodeErrors.get())
+				.append(" dropped commands: ").append(droppedCommands.get()).append('\n');
+		for(int i = 0; i < 256; i++) {
+			if(packetsIn.get(i) == 0 && messagesOut.get(i) == 0)
+				continue;
+			report.append(MESSAGE_NAMES[i] == null ? "0x" + Integer.toHexString(i) : MESSAGE_NAMES[i])
+					.append(" in: ").append(packetsIn.get(i)).append(" (").append(bytesIn.get(i)).append(" B)")
+					.append(" out: ").append(messagesOut.get(i)).append(" (").append(bytesOut.get(i)).append(" B)\n");
+		}
+		for(String client : getClientStats()) {
+			report.append(client).append('\n');
+		}
+		report.setLength(report.length() - 1); //no trailing line break
+		return report.toString();
+	}
+	
+	private static long sum(AtomicLongArray array) {
+		long sum = 0;
+		for(int i = 0; i < array.length(); i++)
+			sum += array.get(i);
+		return sum;
+	}
+}
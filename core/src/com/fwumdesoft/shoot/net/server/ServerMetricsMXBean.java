@@ -0,0 +1,43 @@
+package com.fwumdesoft.shoot.net.server;
+
+/**
+ * Management interface of {@link ServerMetrics}. Every attribute can be read from a JMX console such as
+ * JConsole while the server is running.
+ */
+public interface ServerMetricsMXBean {
+	long getTickCount();
+	
+	double getTickMeanMillis();
+	
+	double getTickP50Millis();
+	
+	double getTickP99Millis();
+	
+	double getTickP999Millis();
+	
+	double getTickMaxMillis();
+	
+	long getPacketsReceived();
+	
+	long getBytesReceived();
+	
+	long getMessagesSent();
+	
+	long getBytesSent();
+	
+	long getDecodeErrors();
+	
+	long getDroppedCommands();
+	
+	int getClientCount();
+	
+	int getBoltCount();
+	
+	int getOutboundQueueDepth();
+	
+	/** @return One line per client with its round trip time, snapshot loss and queue depth. */
+	String[] getClientStats();
+	
+	/** @return Every metric formatted as text. */
+	String getReport();
+}
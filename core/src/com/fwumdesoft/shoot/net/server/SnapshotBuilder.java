@@ -0,0 +1,187 @@
+package com.fwumdesoft.shoot.net.server;
+
+import static com.fwumdesoft.shoot.net.NetConstants.*;
+import java.nio.ByteBuffer;
+import com.badlogic.gdx.utils.Array;
+import com.fwumdesoft.shoot.net.BitWriter;
+import com.fwumdesoft.shoot.net.DeltaCodec;
+import com.fwumdesoft.shoot.net.SnapshotState;
+
+/**
+ * Encodes a snapshot into as few {@code NetConstants.MSG_SNAPSHOT} packets as possible.
+ * The snapshot is delta encoded against a baseline snapshot so that only actors that changed
+ * since the baseline are sent. Actors that move in a straight line are compared to where their velocity
+ * took them since the baseline, so one that kept moving the same way isn't sent at all.
+ * <p>Packets are reused between snapshots so building a snapshot doesn't allocate once enough
+ * packets exist to hold the largest snapshot so far. Only use a SnapshotBuilder from one thread.
+ */
+class SnapshotBuilder {
+	private final Array<ByteBuffer> packets = new Array<>();
+	private int packetCount;
+	private int sequence, baselineSequence;
+	
+	private ByteBuffer buffer;
+	private final BitWriter writer = new BitWriter();
+	private int entryCount;
+	
+	/**
+	 * Encodes a snapshot. The packets from the previous snapshot are invalid after this is called.
+	 * @param current Snapshot to encode.
+	 * @param baseline Snapshot the client already has or null to send every actor in full.
+	 */
+	void build(SnapshotState current, SnapshotState baseline) {
+		sequence = current.getSequence();
+		baselineSequence = baseline == null ? NO_SNAPSHOT : baseline.getSequence();
+		packetCount = 0;
+		buffer = null;
+		
+		final int ticks = baseline == null ? 0 : current.getSequence() - baseline.getSequence();
+		for(int i = 0; i < current.size(); i++) {
+			int baseIndex = baseline == null ? -1 : baseline.indexOf(current.getId(i));
+			if(baseIndex < 0 || current.getVelocityX(i) != baseline.getVelocityX(baseIndex)
+					|| current.getVelocityY(i) != baseline.getVelocityY(baseIndex)) {
+				writeFull(current, i);
+				continue;
+			}
+			
+			if(baseline.isMoving(baseIndex)) {
+				//predict where the actor's velocity took it since the baseline and only send how far it is from that
+				int predictedX = baseline.predictX(baseIndex, ticks), predictedY = baseline.predictY(baseIndex, ticks);
+				if(current.getFixedX(i) == predictedX && current.getFixedY(i) == predictedY
+						&& current.getRotation(i) == baseline.getRotation(baseIndex))
+					continue; //the client will predict the same state
+				
+				ensureSpace();
+				writer.write(SNAPSHOT_ENTRY_DELTA, 2);
+				writer.write(current.getId(i), 32);
+				DeltaCodec.write(writer, current.getFixedX(i), predictedX, FIXED_POSITION_BITS);
+				DeltaCodec.write(writer, current.getFixedY(i), predictedY, FIXED_POSITION_BITS);
+				DeltaCodec.write(writer, current.getRotation(i), baseline.getRotation(baseIndex), ANGLE_BITS);
+				entryCount++;
+				continue;
+			}
+			
+			if(current.getX(i) == baseline.getX(baseIndex) && current.getY(i) == baseline.getY(baseIndex)
+					&& current.getRotation(i) == baseline.getRotation(baseIndex))
+				continue; //the client already has this actor's state
+			
+			ensureSpace();
+			writer.write(SNAPSHOT_ENTRY_DELTA, 2);
+			writer.write(current.getId(i), 32);
+			DeltaCodec.write(writer, current.getX(i), baseline.getX(baseIndex), POSITION_BITS);
+			DeltaCodec.write(writer, current.getY(i), baseline.getY(baseIndex), POSITION_BITS);
+			DeltaCodec.write(writer, current.getRotation(i), baseline.getRotation(baseIndex), ANGLE_BITS);
+			entryCount++;
+		}
+		
+		//tell the client about actors that are gone since the baseline
+		if(baseline != null) {
+			for(int i = 0; i < baseline.size(); i++) {
+				if(current.indexOf(baseline.getId(i)) < 0) {
+					ensureSpace();
+					writer.write(SNAPSHOT_ENTRY_REMOVED, 2);
+					writer.write(baseline.getId(i), 32);
+					entryCount++;
+				}
+			}
+		}
+		
+		//always send at least one packet so the client can acknowledge the snapshot
+		if(buffer == null)
+			nextPacket();
+		finishPacket();
+		
+		//every packet needs to know how many packets are in the snapshot
+		for(int i = 0; i < packetCount; i++) {
+			packets.get(i).putShort(HEADER_LENGTH + 10, (short)packetCount);
+		}
+		buffer = null;
+	}
+	
+	/**
+	 * Writes an actor that is new since the baseline or whose velocity changed.
+	 */
+	private void writeFull(SnapshotState current, int index) {
+		ensureSpace();
+		if(current.isMoving(index)) {
+			writer.write(SNAPSHOT_ENTRY_MOVING, 2);
+			writer.write(current.getId(index), 32);
+			writer.write(current.getFixedX(index), FIXED_POSITION_BITS);
+			writer.write(current.getFixedY(index), FIXED_POSITION_BITS);
+			writer.write(current.getRotation(index), ANGLE_BITS);
+			writer.write(current.getVelocityX(index), VELOCITY_BITS);
+			writer.write(current.getVelocityY(index), VELOCITY_BITS);
+		} else {
+			writer.write(SNAPSHOT_ENTRY_FULL, 2);
+			writer.write(current.getId(index), 32);
+			writer.write(current.getX(index), POSITION_BITS);
+			writer.write(current.getY(index), POSITION_BITS);
+			writer.write(current.getRotation(index), ANGLE_BITS);
+		}
+		entryCount++;
+	}
+	
+	/** @return The sequence number of the last snapshot. */
+	int getSequence() {
+		return sequence;
+	}
+	
+	/** @return The number of packets in the last snapshot. */
+	int getPacketCount() {
+		return packetCount;
+	}
+	
+	/**
+	 * @param index Index of the packet. Must be less than {@link #getPacketCount()}.
+	 * @return A packet from the last snapshot. The whole message is between index 0 and its limit.
+	 */
+	ByteBuffer getPacket(int index) {
+		if(index >= packetCount)
+			throw new IndexOutOfBoundsException("index: " + index + " packetCount: " + packetCount);
+		return packets.get(index);
+	}
+	
+	/**
+	 * Starts a new packet if the current one can't hold another entry.
+	 */
+	private void ensureSpace() {
+		if(buffer == null || writer.bitsRemaining() < SNAPSHOT_MAX_ENTRY_BITS) {
+			finishPacket();
+			nextPacket();
+		}
+	}
+	
+	/**
+	 * Gets the next unused packet and writes everything but the lengths and counts into it.
+	 */
+	private void nextPacket() {
+		if(packetCount == packets.size)
+			packets.add(ByteBuffer.allocateDirect(PACKET_LENGTH));
+		buffer = packets.get(packetCount);
+		buffer.clear();
+		buffer.putInt(0); //length is filled in by finishPacket()
+		buffer.put(MSG_SNAPSHOT);
+		buffer.putShort((short)NULL_ID);
+		buffer.putInt(sequence);
+		buffer.putInt(baselineSequence);
+		buffer.putShort((short)packetCount);
+		buffer.putShort((short)0); //packet count is filled in by build()
+		buffer.putShort((short)0); //entry count is filled in by finishPacket()
+		writer.set(buffer);
+		packetCount++;
+		entryCount = 0;
+	}
+	
+	/**
+	 * Fills in the data length and entry count of the current packet.
+	 */
+	private void finishPacket() {
+		if(buffer == null)
+			return;
+		writer.flush();
+		int dataLength = buffer.position() - HEADER_LENGTH;
+		buffer.putInt(DATA_LENGTH_OFFSET, dataLength);
+		buffer.putShort(HEADER_LENGTH + 12, (short)entryCount);
+		buffer.flip();
+	}
+}
@@ -0,0 +1,103 @@
+package com.fwumdesoft.shoot.net.server;
+
+import static com.fwumdesoft.shoot.net.NetConstants.*;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntMap;
+import com.fwumdesoft.shoot.net.SnapshotState;
+
+/**
+ * Remembers the last {@code NetConstants.SNAPSHOT_HISTORY_LENGTH} snapshots so each client can be sent
+ * a snapshot that is delta encoded against the newest snapshot it acknowledged.
+ * <p>Clients that acknowledged the same baseline share the same encoded packets so each tick
+ * only encodes once per distinct baseline. Only use a SnapshotHistory from one thread.
+ */
+class SnapshotHistory {
+	/** Max number of steps an actor can be from its predicted position before the prediction is corrected. */
+	static final int PREDICTION_TOLERANCE = 2;
+	
+	private final SnapshotState[] states = new SnapshotState[SNAPSHOT_HISTORY_LENGTH];
+	private SnapshotState current;
+	
+	/** Snapshots encoded this tick keyed by the sequence number of their baseline. */
+	private final IntMap<SnapshotBuilder> builders = new IntMap<>();
+	private final Array<SnapshotBuilder> freeBuilders = new Array<>();
+	
+	SnapshotHistory() {
+		for(int i = 0; i < states.length; i++)
+			states[i] = new SnapshotState();
+	}
+	
+	/**
+	 * Starts a new snapshot. The snapshots encoded during the last tick are invalid after this is called.
+	 * @param sequence Sequence number of the new snapshot.
+	 * @return The empty SnapshotState to fill with this tick's actors.
+	 */
+	SnapshotState begin(int sequence) {
+		for(SnapshotBuilder builder : builders.values())
+			freeBuilders.add(builder);
+		builders.clear();
+		current = states[sequence & (SNAPSHOT_HISTORY_LENGTH - 1)];
+		current.clear(sequence);
+		return current;
+	}
+	
+	/**
+	 * Adds an actor that moves in a straight line to the current snapshot. If the actor was in the last snapshot
+	 * with the same velocity and rotation and is within {@link #PREDICTION_TOLERANCE} steps of where that
+	 * snapshot predicts it, the prediction is recorded instead of its quantized position. That keeps it exactly
+	 * on its predicted path so it doesn't have to be sent, and it is only corrected once it drifts further.
+	 * @param x Quantized x position.
+	 * @param y Quantized y position.
+	 * @param rotation Quantized rotation.
+	 * @param velocityX Fixed point distance moved along x each tick. See {@link SnapshotState#toFixedVelocity(float, com.fwumdesoft.shoot.net.Quantizer)}.
+	 * @param velocityY Fixed point distance moved along y each tick.
+	 */
+	void putMoving(int id, int x, int y, int rotation, int velocityX, int velocityY) {
+		SnapshotState previous = get(current.getSequence() - 1);
+		int index = previous == null ? -1 : previous.indexOf(id);
+		if(index >= 0 && previous.getVelocityX(index) == velocityX && previous.getVelocityY(index) == velocityY
+				&& previous.getRotation(index) == rotation) {
+			int predictedX = previous.predictX(index, 1), predictedY = previous.predictY(index, 1);
+			if(isClose(predictedX, x) && isClose(predictedY, y)) {
+				current.putMoving(id, predictedX, predictedY, rotation, velocityX, velocityY);
+				return;
+			}
+		}
+		current.putMoving(id, x << SUBSTEP_BITS, y << SUBSTEP_BITS, rotation, velocityX, velocityY);
+	}
+	
+	/**
+	 * @return Whether a fixed point position is within {@link #PREDICTION_TOLERANCE} steps of a quantized one.
+	 */
+	private static boolean isClose(int fixed, int quantized) {
+		//positions that left the quantized range wrapped around so they are never close
+		return Math.abs(SnapshotState.toQuantized(fixed) - quantized) <= PREDICTION_TOLERANCE;
+	}
+	
+	/**
+	 * Gets the current snapshot encoded against a baseline. Encodes it if it hasn't been already this tick.
+	 * @param baselineSequence Sequence number of the newest snapshot the client acknowledged.
+	 * @return The encoded snapshot. It is encoded in full if the baseline is too old to be remembered.
+	 */
+	SnapshotBuilder getSnapshot(int baselineSequence) {
+		SnapshotState baseline = get(baselineSequence);
+		int key = baseline == null ? NO_SNAPSHOT : baselineSequence;
+		SnapshotBuilder builder = builders.get(key);
+		if(builder == null) {
+			builder = freeBuilders.size > 0 ? freeBuilders.pop() : new SnapshotBuilder();
+			builder.build(current, baseline);
+			builders.put(key, builder);
+		}
+		return builder;
+	}
+	
+	/**
+	 * @return The remembered snapshot with the sequence number or null if it isn't remembered.
+	 */
+	private SnapshotState get(int sequence) {
+		if(sequence == NO_SNAPSHOT || current.getSequence() - sequence >= SNAPSHOT_HISTORY_LENGTH || current.getSequence() - sequence <= 0)
+			return null;
+		SnapshotState state = states[sequence & (SNAPSHOT_HISTORY_LENGTH - 1)];
+		return state.getSequence() == sequence ? state : null;
+	}
+}
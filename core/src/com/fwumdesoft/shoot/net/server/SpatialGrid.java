@@ -0,0 +1,121 @@
+package com.fwumdesoft.shoot.net.server;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * A uniform grid used as a broad phase for collision checks. Objects are inserted by an index
+ * into an array the caller owns, and queries return the indices of every object whose bounds
+ * share a cell with the query bounds. The grid is meant to be cleared and rebuilt every tick.
+ * <p>Cells store their objects in linked lists backed by int arrays so rebuilding and querying
+ * the grid doesn't allocate once the arrays are big enough. Bounds outside of the grid are
+ * clamped to its edge cells.
+ */
+class SpatialGrid {
+	private final float minX, minY;
+	private final float cellSize;
+	private final int columns, rows;
+	
+	/** Index of the first entry in each cell or -1 if the cell is empty. */
+	private final int[] cellHeads;
+	/** Object index of each entry. */
+	private int[] entryObjects = new int[64];
+	/** Index of the next entry in the same cell or -1 if it is the last one. */
+	private int[] entryNext = new int[64];
+	private int entryCount;
+	
+	/** Query number each object was last returned by so objects in several cells are only returned once. */
+	private int[] objectStamps = new int[64];
+	private int queryStamp;
+	
+	/**
+	 * @param minX Left edge of the grid.
+	 * @param minY Bottom edge of the grid.
+	 * @param width Width of the grid.
+	 * @param height Height of the grid.
+	 * @param cellSize Width and height of each cell. Should be at least as big as the objects being inserted.
+	 */
+	SpatialGrid(float minX, float minY, float width, float height, float cellSize) {
+		this.minX = minX;
+		this.minY = minY;
+		this.cellSize = cellSize;
+		columns = Math.max(1, (int)Math.ceil(width / cellSize));
+		rows = Math.max(1, (int)Math.ceil(height / cellSize));
+		cellHeads = new int[columns * rows];
+		clear();
+	}
+	
+	/**
+	 * Removes every object from the grid.
+	 */
+	void clear() {
+		for(int i = 0; i < cellHeads.length; i++)
+			cellHeads[i] = -1;
+		entryCount = 0;
+	}
+	
+	/**
+	 * Inserts an object into every cell its bounds overlap.
+	 * @param index Index of the object in the caller's array.
+	 * @param bounds Axis aligned bounds of the object.
+	 */
+	void insert(int index, Rectangle bounds) {
+		if(index >= objectStamps.length) {
+			int[] newStamps = new int[Math.max(index + 1, objectStamps.length * 2)];
+			System.arraycopy(objectStamps, 0, newStamps, 0, objectStamps.length);
+			objectStamps = newStamps;
+		}
+		
+		int startColumn = column(bounds.x), endColumn = column(bounds.x + bounds.width);
+		int startRow = row(bounds.y), endRow = row(bounds.y + bounds.height);
+		for(int r = startRow; r <= endRow; r++) {
+			for(int c = startColumn; c <= endColumn; c++) {
+				if(entryCount == entryObjects.length) {
+					int[] newObjects = new int[entryCount * 2];
+					int[] newNext = new int[entryCount * 2];
+					System.arraycopy(entryObjects, 0, newObjects, 0, entryCount);
+					System.arraycopy(entryNext, 0, newNext, 0, entryCount);
+					entryObjects = newObjects;
+					entryNext = newNext;
+				}
+				int cell = r * columns + c;
+				entryObjects[entryCount] = index;
+				entryNext[entryCount] = cellHeads[cell];
+				cellHeads[cell] = entryCount++;
+			}
+		}
+	}
+	
+	/**
+	 * Finds every object that shares a cell with the bounds. These are only candidates
+	 * and still need a narrow phase check.
+	 * @param bounds Axis aligned bounds to query.
+	 * @param out Receives the index of each candidate once. It is not cleared first.
+	 */
+	void query(Rectangle bounds, IntArray out) {
+		queryStamp++;
+		int startColumn = column(bounds.x), endColumn = column(bounds.x + bounds.width);
+		int startRow = row(bounds.y), endRow = row(bounds.y + bounds.height);
+		for(int r = startRow; r <= endRow; r++) {
+			for(int c = startColumn; c <= endColumn; c++) {
+				for(int e = cellHeads[r * columns + c]; e != -1; e = entryNext[e]) {
+					int object = entryObjects[e];
+					if(objectStamps[object] != queryStamp) {
+						objectStamps[object] = queryStamp;
+						out.add(object);
+					}
+				}
+			}
+		}
+	}
+	
+	private int column(float x) {
+		int c = (int)((x - minX) / cellSize);
+		return c < 0 ? 0 : c >= columns ? columns - 1 : c;
+	}
+	
+	private int row(float y) {
+		int r = (int)((y - minY) / cellSize);
+		return r < 0 ? 0 : r >= rows ? rows - 1 : r;
+	}
+}
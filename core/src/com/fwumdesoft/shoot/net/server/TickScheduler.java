@@ -0,0 +1,128 @@
+package com.fwumdesoft.shoot.net.server;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the server simulation at a fixed rate. The thread calling {@link #update()} is parked
+ * between ticks instead of spinning, and every tick is given the same fixed delta time so the
+ * simulation does not depend on how fast the loop is being driven.
+ * <p>If the simulation falls behind it will run up to {@code maxCatchUpTicks} ticks back to back
+ * to catch up. Any ticks past that are dropped so a long stall can't snowball into a longer one.
+ */
+class TickScheduler {
+	/** Default number of ticks that may be run back to back after the simulation falls behind. */
+	static final int DEFAULT_MAX_CATCH_UP_TICKS = 5;
+	
+	private final Tickable tickable;
+	private final int tickRate;
+	private final long tickNanos;
+	private final float tickDelta;
+	private final int maxCatchUpTicks;
+	
+	/** {@link System#nanoTime()} at which the next tick is due. */
+	private long nextTickTime;
+	private boolean started;
+	
+	private volatile long tickCount;
+	private volatile long overrunCount;
+	private volatile long droppedTickCount;
+	
+	/**
+	 * @param tickRate Number of ticks per second.
+	 * @param maxCatchUpTicks Max number of ticks to run back to back when the simulation falls behind.
+	 * @param tickable Callback that advances the simulation by one tick.
+	 */
+	TickScheduler(int tickRate, int maxCatchUpTicks, Tickable tickable) {
+		if(tickRate <= 0)
+			throw new IllegalArgumentException("tickRate must be positive");
+		if(maxCatchUpTicks <= 0)
+			throw new IllegalArgumentException("maxCatchUpTicks must be positive");
+		this.tickable = tickable;
+		this.tickRate = tickRate;
+		this.maxCatchUpTicks = maxCatchUpTicks;
+		tickNanos = 1000000000L / tickRate;
+		tickDelta = 1f / tickRate;
+	}
+	
+	TickScheduler(int tickRate, Tickable tickable) {
+		this(tickRate, DEFAULT_MAX_CATCH_UP_TICKS, tickable);
+	}
+	
+	/**
+	 * Parks the calling thread until the next tick is due and then runs every tick that has come due,
+	 * up to {@code maxCatchUpTicks} of them.
+	 * <p>Returns early without ticking if the calling thread is interrupted while parked. The interrupt is
+	 * cleared so the caller can shut down without it getting in the way, e.g. of closing channels.
+	 * @return false if the calling thread was interrupted and the caller should stop.
+	 */
+	boolean update() {
+		long now = System.nanoTime();
+		if(!started) {
+			started = true;
+			nextTickTime = now;
+		}
+		
+		//wait for the next tick
+		while(nextTickTime - now > 0) {
+			LockSupport.parkNanos(this, nextTickTime - now);
+			if(Thread.interrupted())
+				return false;
+			now = System.nanoTime();
+		}
+		
+		//run every tick that is due
+		int ticksRun = 0;
+		while(nextTickTime - now <= 0 && ticksRun < maxCatchUpTicks) {
+			long tickStart = System.nanoTime();
+			tickable.tick(tickDelta);
+			now = System.nanoTime();
+			if(now - tickStart > tickNanos)
+				overrunCount++;
+			tickCount++;
+			ticksRun++;
+			nextTickTime += tickNanos;
+		}
+		
+		//drop whatever could not be caught up on
+		if(nextTickTime - now <= 0) {
+			long behind = (now - nextTickTime) / tickNanos + 1;
+			droppedTickCount += behind;
+			nextTickTime += behind * tickNanos;
+		}
+		return true;
+	}
+	
+	int getTickRate() {
+		return tickRate;
+	}
+	
+	/** @return The fixed delta time in seconds that is passed to every tick. */
+	float getTickDelta() {
+		return tickDelta;
+	}
+	
+	/** @return Number of ticks that have been run. */
+	long getTickCount() {
+		return tickCount;
+	}
+	
+	/** @return Number of ticks that took longer than the tick period to run. */
+	long getOverrunCount() {
+		return overrunCount;
+	}
+	
+	/** @return Number of ticks that were skipped because the simulation fell too far behind. */
+	long getDroppedTickCount() {
+		return droppedTickCount;
+	}
+	
+	/**
+	 * Advances the simulation by one fixed step.
+	 */
+	interface Tickable {
+		/**
+		 * @param delta Fixed time step in seconds.
+		 */
+		void tick(float delta);
+	}
+}
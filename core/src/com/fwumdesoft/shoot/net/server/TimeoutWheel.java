@@ -0,0 +1,77 @@
+package com.fwumdesoft.shoot.net.server;
+
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * A hashed timing wheel that finds elements whose deadline has passed without looking at the elements
+ * that are still alive.
+ * <p>Time is split into slots of a fixed length and each slot holds the elements whose deadline falls
+ * within it. Deadlines further away than the whole wheel are put in the furthest slot. Each call to
+ * {@link #advance(long, Array)} only visits the slots that were passed since the last call, so it costs
+ * nothing while no deadline is due.
+ * <p>Pushing a deadline back doesn't move the element. The owner should check the real deadline of
+ * each due element and {@link #schedule(Object, long)} it again if it hasn't passed yet, which happens
+ * at most once per timeout for an element that stays alive. Only use a TimeoutWheel from one thread.
+ * @param <T> Type of the elements.
+ */
+class TimeoutWheel<T> {
+	private final Array<T>[] slots;
+	private final long slotLength;
+	/** Absolute index of the last slot that was passed. */
+	private long lastSlot;
+	private int size;
+	
+	/**
+	 * @param slotCount Number of slots in the wheel.
+	 * @param slotLength Length of time each slot covers.
+	 * @param startTime Current time. Uses the same unit as every other time given to this wheel.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	TimeoutWheel(int slotCount, long slotLength, long startTime) {
+		if(slotCount <= 0 || slotLength <= 0)
+			throw new IllegalArgumentException("slotCount and slotLength must be positive");
+		slots = new Array[slotCount];
+		for(int i = 0; i < slotCount; i++)
+			slots[i] = new Array<>(false, 16);
+		this.slotLength = slotLength;
+		lastSlot = startTime / slotLength;
+	}
+	
+	/**
+	 * Adds an element that is due once {@code deadline} is passed. An element must only be scheduled
+	 * once at a time.
+	 * @param deadline Time the element is due at. Elements due before the next slot go in the next slot.
+	 */
+	void schedule(T element, long deadline) {
+		long slot = deadline / slotLength + 1; //only due once the whole slot holding the deadline is passed
+		slot = Math.max(slot, lastSlot + 1);
+		slot = Math.min(slot, lastSlot + slots.length);
+		slots[(int)(slot % slots.length)].add(element);
+		size++;
+	}
+	
+	/**
+	 * Moves the wheel to {@code time} and removes every element from the slots that were passed.
+	 * @param time Current time.
+	 * @param due Receives the removed elements. Their real deadlines need to be checked by the caller.
+	 */
+	void advance(long time, Array<T> due) {
+		long slot = time / slotLength;
+		//every slot is emptied once the wheel moves a whole turn
+		long first = Math.max(lastSlot + 1, slot - slots.length + 1);
+		for(long i = first; i <= slot; i++) {
+			Array<T> passed = slots[(int)(i % slots.length)];
+			if(passed.size == 0)
+				continue;
+			due.addAll(passed);
+			size -= passed.size;
+			passed.clear();
+		}
+		lastSlot = Math.max(lastSlot, slot);
+	}
+	
+	/** @return Number of scheduled elements. */
+	int size() {
+		return size;
+	}
+}
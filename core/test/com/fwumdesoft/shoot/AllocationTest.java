@@ -0,0 +1,130 @@
+package com.fwumdesoft.shoot;
+
+import static org.junit.Assert.*;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Application.ApplicationType;
+import com.badlogic.gdx.Gdx;
+import com.fwumdesoft.shoot.model.Bolt;
+import com.fwumdesoft.shoot.model.Player;
+import com.fwumdesoft.shoot.net.ClientConfig;
+import com.fwumdesoft.shoot.net.ServerInterface;
+
+/**
+ * Checks that the code run every frame doesn't allocate once it's warmed up, so it can't put any
+ * pressure on the garbage collector no matter how many actors there are.
+ */
+public class AllocationTest {
+	private static final int WARMUP_ITERATIONS = 200000;
+	private static final int ITERATIONS = 100000;
+	private static final float DELTA = 1f / 60f;
+	
+	private static com.sun.management.ThreadMXBean threads;
+	private static Application previousApp;
+	
+	@BeforeClass
+	public static void setUp() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assertTrue("The JVM can't count allocated bytes", bean instanceof com.sun.management.ThreadMXBean);
+		threads = (com.sun.management.ThreadMXBean)bean;
+		threads.setThreadAllocatedMemoryEnabled(true);
+		
+		//actors only need Gdx.app to know they are headless and the connection only logs through it
+		previousApp = Gdx.app;
+		Gdx.app = (Application)Proxy.newProxyInstance(Application.class.getClassLoader(), new Class<?>[] {Application.class},
+				(proxy, method, args) -> {
+					switch(method.getName())
+					{
+					case "getType":
+						return ApplicationType.HeadlessDesktop;
+					case "getLogLevel":
+						return Application.LOG_INFO;
+					default:
+						return null;
+					}
+				});
+	}
+	
+	@AfterClass
+	public static void tearDown() {
+		Gdx.app = previousApp;
+	}
+	
+	@Test
+	public void playerActDoesNotAllocate() {
+		Player player = new Player(1);
+		player.setMovingForward(true);
+		player.setRotatingClockwise(true);
+		assertNoAllocation(() -> player.act(DELTA));
+		
+		//gliding after the player stops moving
+		player.setMovingForward(false);
+		assertNoAllocation(() -> {
+			player.act(DELTA);
+			player.setMovingBackward(true);
+			player.act(DELTA);
+			player.setMovingBackward(false);
+		});
+	}
+	
+	@Test
+	public void boltActDoesNotAllocate() {
+		Bolt bolt = new Bolt().setSpeed(600f);
+		bolt.setRotation(30f);
+		assertNoAllocation(() -> {
+			bolt.act(DELTA);
+			if(bolt.getX() > 10000f)
+				bolt.setPosition(0f, 0f);
+		});
+	}
+	
+	@Test
+	public void netTickDoesNotAllocate() throws Exception {
+		try(DatagramSocket fakeServer = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+			ClientConfig config = new ClientConfig();
+			config.serverHost = InetAddress.getLoopbackAddress().getHostAddress();
+			config.serverPort = fakeServer.getLocalPort();
+			ServerInterface server = new ServerInterface(config);
+			server.connect();
+			server.setHeartbeatInterval(0); //send a heartbeat every time
+			Player player = new Player(server.getClientId(), false);
+			player.setMovingForward(true);
+			player.setRotatingClockwise(true);
+			try {
+				//the same calls GameScreen makes every client network tick
+				assertNoAllocation(() -> {
+					player.act(DELTA);
+					server.updateLocalPlayer(player);
+					server.heartbeat();
+				});
+			} finally {
+				server.close();
+			}
+		}
+	}
+	
+	/**
+	 * Runs an action until it's compiled and then fails if running it more allocates anything.
+	 */
+	private static void assertNoAllocation(Runnable action) {
+		for(int i = 0; i < WARMUP_ITERATIONS; i++)
+			action.run();
+		
+		final long threadId = Thread.currentThread().getId();
+		//reading the counter can allocate so measure that first and take it away
+		long overhead = -threads.getThreadAllocatedBytes(threadId);
+		overhead += threads.getThreadAllocatedBytes(threadId);
+		
+		long before = threads.getThreadAllocatedBytes(threadId);
+		for(int i = 0; i < ITERATIONS; i++)
+			action.run();
+		long allocated = threads.getThreadAllocatedBytes(threadId) - before - overhead;
+		assertEquals("Allocated bytes over " + ITERATIONS + " iterations", 0, allocated);
+	}
+}
@@ -0,0 +1,68 @@
+package com.fwumdesoft.shoot.net;
+
+import static com.fwumdesoft.shoot.net.NetConstants.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class QuantizerTest {
+	/** Number of values checked across each range. */
+	private static final int SAMPLES = 1000000;
+	
+	@Test
+	public void positionErrorIsBounded() {
+		assertErrorBounded(X_QUANTIZER, -WORLD_MARGIN, WORLD_WIDTH + WORLD_MARGIN, false);
+		assertErrorBounded(Y_QUANTIZER, -WORLD_MARGIN, WORLD_HEIGHT + WORLD_MARGIN, false);
+	}
+	
+	@Test
+	public void angleErrorIsBounded() {
+		assertErrorBounded(ANGLE_QUANTIZER, 0f, 360f, true);
+	}
+	
+	@Test
+	public void angleWrapsAround() {
+		Quantizer q = ANGLE_QUANTIZER;
+		for(int i = 0; i <= SAMPLES; i++) {
+			float angle = -1080f + 2160f * i / SAMPLES;
+			float error = error(q, angle, true);
+			assertTrue("angle " + angle + " error " + error, error <= q.getMaxError());
+		}
+		//just below 360 wraps to 0 instead of overflowing
+		assertEquals(0, q.quantize(Math.nextDown(360f)));
+		assertEquals(q.quantize(10f), q.quantize(370f));
+		assertEquals(q.quantize(350f), q.quantize(-10f));
+	}
+	
+	@Test
+	public void positionIsClamped() {
+		assertEquals(0, X_QUANTIZER.quantize(-WORLD_MARGIN - 100f));
+		assertEquals(X_QUANTIZER.getMaxValue(), X_QUANTIZER.quantize(WORLD_WIDTH + WORLD_MARGIN + 100f));
+	}
+	
+	/**
+	 * @param angle true to measure the error the short way around the circle.
+	 */
+	private static void assertErrorBounded(Quantizer q, float min, float max, boolean angle) {
+		float worst = 0;
+		for(int i = 0; i <= SAMPLES; i++) {
+			float value = min + (max - min) * i / SAMPLES;
+			worst = Math.max(worst, error(q, value, angle));
+		}
+		//also check around every step boundary where the error is largest
+		for(int quantized = 0; quantized < q.getMaxValue(); quantized++) {
+			float boundary = (q.dequantize(quantized) + q.dequantize(quantized + 1)) / 2;
+			for(float value : new float[] {Math.nextDown(boundary), boundary, Math.nextUp(boundary)})
+				worst = Math.max(worst, error(q, value, angle));
+		}
+		assertTrue("worst error " + worst + " is above " + q.getMaxError(), worst <= q.getMaxError());
+	}
+	
+	private static float error(Quantizer q, float value, boolean angle) {
+		float error = Math.abs(q.dequantize(q.quantize(value)) - value);
+		if(angle) {
+			error %= 360f;
+			error = Math.min(error, 360f - error);
+		}
+		return error;
+	}
+}
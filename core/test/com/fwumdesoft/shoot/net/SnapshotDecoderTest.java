@@ -0,0 +1,81 @@
+package com.fwumdesoft.shoot.net;
+
+import static com.fwumdesoft.shoot.net.NetConstants.*;
+import static org.junit.Assert.*;
+import java.nio.ByteBuffer;
+import com.badlogic.gdx.utils.IntArray;
+import org.junit.Test;
+
+public class SnapshotDecoderTest {
+	private static final int ACTOR_ID = 42;
+	
+	private final SnapshotDecoder decoder = new SnapshotDecoder();
+	private final RecordingListener listener = new RecordingListener();
+	
+	@Test
+	public void removedEntryIsPassedToListener() {
+		ByteBuffer data = startPacket(0, NO_SNAPSHOT, 1);
+		BitWriter writer = new BitWriter().set(data);
+		writer.write(SNAPSHOT_ENTRY_FULL, 2);
+		writer.write(ACTOR_ID, 32);
+		writer.write(100, POSITION_BITS);
+		writer.write(200, POSITION_BITS);
+		writer.write(300, ANGLE_BITS);
+		writer.flush();
+		data.flip();
+		assertTrue(decoder.decode(data, listener));
+		assertEquals(1, listener.updated.size);
+		assertEquals(ACTOR_ID, listener.updated.get(0));
+		
+		data = startPacket(1, 0, 1);
+		writer.set(data);
+		writer.write(SNAPSHOT_ENTRY_REMOVED, 2);
+		writer.write(ACTOR_ID, 32);
+		writer.flush();
+		data.flip();
+		assertTrue(decoder.decode(data, listener));
+		assertEquals(1, listener.removed.size);
+		assertEquals(ACTOR_ID, listener.removed.get(0));
+		
+		//the actor is gone from the new baseline so a delta against it can't be decoded
+		data = startPacket(2, 1, 1);
+		writer.set(data);
+		writer.write(SNAPSHOT_ENTRY_DELTA, 2);
+		writer.write(ACTOR_ID, 32);
+		DeltaCodec.write(writer, 100, 100, POSITION_BITS);
+		DeltaCodec.write(writer, 200, 200, POSITION_BITS);
+		DeltaCodec.write(writer, 300, 300, ANGLE_BITS);
+		writer.flush();
+		data.flip();
+		assertFalse(decoder.decode(data, listener));
+		assertEquals(1, listener.updated.size);
+	}
+	
+	/**
+	 * @return A buffer holding the start of a one packet snapshot's data section, positioned after the entry count.
+	 */
+	private static ByteBuffer startPacket(int sequence, int baselineSequence, int entryCount) {
+		ByteBuffer data = ByteBuffer.allocate(PACKET_LENGTH);
+		data.putInt(sequence);
+		data.putInt(baselineSequence);
+		data.putShort((short)0);
+		data.putShort((short)1);
+		data.putShort((short)entryCount);
+		return data;
+	}
+	
+	private static class RecordingListener implements SnapshotDecoder.Listener {
+		final IntArray updated = new IntArray();
+		final IntArray removed = new IntArray();
+		
+		@Override
+		public void updated(int netId, float x, float y, float rotation) {
+			updated.add(netId);
+		}
+		
+		@Override
+		public void removed(int netId) {
+			removed.add(netId);
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package com.fwumdesoft.shoot.net.server;
+
+import static com.fwumdesoft.shoot.net.NetConstants.*;
+import static org.junit.Assert.*;
+import java.nio.ByteBuffer;
+import com.fwumdesoft.shoot.net.SnapshotDecoder;
+import com.fwumdesoft.shoot.net.SnapshotState;
+import org.junit.Test;
+
+public class SnapshotBuilderTest {
+	private static final int BOLT_ID = 1 << 16 | 1;
+	private static final float TICK_DELTA = 1f / DEFAULT_TICK_RATE;
+	
+	private final SnapshotHistory history = new SnapshotHistory();
+	private final BoltStore bolts = new BoltStore();
+	private int sequence;
+	
+	@Test
+	public void steadyBoltIsNotSent() {
+		bolts.add(BOLT_ID, 1, 100f, 200f, 33f, 700f);
+		recordTick();
+		SnapshotBuilder full = history.getSnapshot(NO_SNAPSHOT);
+		assertEquals(1, getEntryCount(full));
+		
+		for(int tick = 1; tick < 200; tick++) {
+			bolts.integrate(TICK_DELTA);
+			recordTick();
+			//every baseline the client could have acknowledged predicts the bolt exactly
+			for(int age = 1; age <= Math.min(tick, SNAPSHOT_HISTORY_LENGTH - 1); age++) {
+				SnapshotBuilder delta = history.getSnapshot(sequence - 1 - age);
+				assertEquals("tick " + tick + " baseline age " + age, 0, getEntryCount(delta));
+				assertEquals(HEADER_LENGTH + SNAPSHOT_HEADER_LENGTH, delta.getPacket(0).limit());
+			}
+		}
+	}
+	
+	@Test
+	public void clientPredictsBoltLikeServer() {
+		bolts.add(BOLT_ID, 1, 100f, 200f, 33f, 700f);
+		SnapshotDecoder decoder = new SnapshotDecoder();
+		LastUpdateListener listener = new LastUpdateListener();
+		recordTick();
+		assertTrue(decode(decoder, history.getSnapshot(NO_SNAPSHOT), listener));
+		assertEquals(1, listener.updates);
+		
+		//the client only acknowledges every fifth snapshot so baselines are several ticks old
+		int acked = 0;
+		for(int tick = 1; tick < 100; tick++) {
+			bolts.integrate(TICK_DELTA);
+			boolean corrected = tick == 50 || tick == 99;
+			if(corrected)
+				bolts.integrate(1f); //knock the bolt off its predicted path so it has to be corrected
+			recordTick();
+			int updates = listener.updates;
+			assertTrue(decode(decoder, history.getSnapshot(acked), listener));
+			assertEquals("tick " + tick, corrected ? updates + 1 : updates, listener.updates);
+			if(corrected) {
+				//the correction is relative to the client's prediction so this only matches if both predicted the same
+				assertEquals(X_QUANTIZER.quantize(bolts.getX(0)), X_QUANTIZER.quantize(listener.x));
+				assertEquals(Y_QUANTIZER.quantize(bolts.getY(0)), Y_QUANTIZER.quantize(listener.y));
+			}
+			if(tick % 5 == 0)
+				acked = sequence - 1;
+		}
+	}
+	
+	private void recordTick() {
+		history.begin(sequence++);
+		for(int i = 0; i < bolts.size(); i++) {
+			history.putMoving(bolts.getId(i), X_QUANTIZER.quantize(bolts.getX(i)), Y_QUANTIZER.quantize(bolts.getY(i)),
+					ANGLE_QUANTIZER.quantize(bolts.getRotation(i)),
+					SnapshotState.toFixedVelocity(bolts.getVelocityX(i) * TICK_DELTA, X_QUANTIZER),
+					SnapshotState.toFixedVelocity(bolts.getVelocityY(i) * TICK_DELTA, Y_QUANTIZER));
+		}
+	}
+	
+	private static int getEntryCount(SnapshotBuilder snapshot) {
+		assertEquals(1, snapshot.getPacketCount());
+		return snapshot.getPacket(0).getShort(HEADER_LENGTH + 12);
+	}
+	
+	private static boolean decode(SnapshotDecoder decoder, SnapshotBuilder snapshot, SnapshotDecoder.Listener listener) {
+		ByteBuffer packet = snapshot.getPacket(0).duplicate();
+		packet.position(HEADER_LENGTH);
+		return decoder.decode(packet, listener);
+	}
+	
+	private static class LastUpdateListener implements SnapshotDecoder.Listener {
+		int updates;
+		float x, y;
+		
+		@Override
+		public void updated(int netId, float newX, float newY, float rotation) {
+			updates++;
+			x = newX;
+			y = newY;
+		}
+		
+		@Override
+		public void removed(int netId) {
+			fail("Nothing was removed");
+		}
+	}
+}
@@ -1,22 +1,30 @@
 package com.fwumdesoft.shoot.desktop;
 
+import java.util.Arrays;
 import com.badlogic.gdx.backends.headless.HeadlessApplication;
 import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplicationConfiguration;
 import com.fwumdesoft.shoot.Main;
+import com.fwumdesoft.shoot.net.ClientConfig;
 import com.fwumdesoft.shoot.net.server.Server;
+import com.fwumdesoft.shoot.net.server.ServerConfig;
 
+/**
+ * Starts the game, or the server if the first argument is {@code server}. Every other argument is a
+ * {@code name=value} setting, see {@link ServerConfig} and {@link ClientConfig}.
+ */
 public class DesktopLauncher {
 	public static void main(String[] arg) {
 		if(arg.length > 0 && arg[0].equals("server")) {
 			HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
-			config.renderInterval = 0f; //this will keep the main loop alive
-			new HeadlessApplication(new Server(), config);
+			config.renderInterval = 0f; //the server parks between ticks itself
+			ServerConfig serverConfig = ServerConfig.load(Arrays.copyOfRange(arg, 1, arg.length));
+			new HeadlessApplication(new Server(serverConfig), config);
 		} else {
 			LwjglApplicationConfiguration config = new LwjglApplicationConfiguration();
 			config.title = "Shooter";
-			new LwjglApplication(new Main(), config);
+			new LwjglApplication(new Main(ClientConfig.load(arg)), config);
 		}
 	}
 }